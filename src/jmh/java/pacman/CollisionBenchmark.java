@@ -0,0 +1,53 @@
+package pacman;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// Collision primitives used by every tick, measured for every ghost on the board
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CollisionBenchmark {
+    @Param({"1", "2", "5", "10"})
+    int scale;
+
+    private GameEngine engine;
+
+    @Setup
+    public void setUp() {
+        engine = SyntheticMazes.engine(scale, 42);
+    }
+
+    @Benchmark
+    public void collides(Blackhole blackhole) {
+        for (int ghost = 1; ghost < engine.actorCount; ghost++) {
+            blackhole.consume(engine.actorsCollide(ghost, GameEngine.PACMAN));
+        }
+    }
+
+    @Benchmark
+    public void collidesWithWall(Blackhole blackhole) {
+        for (int ghost = 1; ghost < engine.actorCount; ghost++) {
+            blackhole.consume(engine.collidesWithWall(ghost));
+        }
+    }
+
+    @Benchmark
+    public void isBlocked(Blackhole blackhole) {
+        for (int ghost = 1; ghost < engine.actorCount; ghost++) {
+            blackhole.consume(engine.isBlocked(engine.actorX[ghost], engine.actorY[ghost] - GameEngine.TILE_UNITS));
+        }
+    }
+
+    @Benchmark
+    public void isIntersection(Blackhole blackhole) {
+        for (int ghost = 1; ghost < engine.actorCount; ghost++) {
+            blackhole.consume(engine.isIntersection(ghost));
+        }
+    }
+}
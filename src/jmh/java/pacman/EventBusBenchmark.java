@@ -0,0 +1,57 @@
+package pacman;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// What the event bus costs the tick: a bare publish with a listener attached, and a tick with
+// and without a bus. The listener only counts, so it keeps up; a slow one would cost the same.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventBusBenchmark {
+    @Param({"false", "true"})
+    boolean bus;
+
+    private final char[] directions = {'U', 'R', 'D', 'L'};
+    private GameEventBus events;
+    private GameEngine engine;
+    private int tick;
+    private volatile long received;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        events = new GameEventBus(1024);
+        events.subscribe("count", new GameEventListener() {
+            @Override
+            public void dotEaten(long tick, int tile, int points) {
+                received++;
+            }
+        });
+        engine = SyntheticMazes.engine(1, 42);
+        engine.events = bus ? events : null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        events.close();
+    }
+
+    @Benchmark
+    public void publish() {
+        events.publish(GameEventBus.DOT_EATEN, tick++, 0, 10);
+    }
+
+    @Benchmark
+    public int tick() {
+        if (engine.isGameOver) {
+            engine.restart();
+        }
+        tick++;
+        engine.step((tick & 15) == 0 ? directions[(tick >> 4) & 3] : ' ');
+        return engine.score;
+    }
+}
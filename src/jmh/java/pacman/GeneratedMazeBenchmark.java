@@ -0,0 +1,50 @@
+package pacman;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Game logic on MazeGenerator boards from the classic size up to a 1000x1000 marathon board:
+// generating one (NavGraph included), loadMap() and a tick with the default ChaseScatter ghosts
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GeneratedMazeBenchmark {
+    @Param({"21", "101", "501", "1000"})
+    int size;
+
+    private final char[] directions = {'U', 'R', 'D', 'L'};
+    private GameEngine engine;
+    private long seed;
+    private int tick;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        engine = SyntheticMazes.generated(size, 42);
+        tick = 0;
+    }
+
+    @Benchmark
+    public Maze generate() {
+        return MazeGenerator.generate(size, size, seed++);
+    }
+
+    @Benchmark
+    public int loadMap() {
+        engine.loadMap();
+        return engine.foodCount;
+    }
+
+    @Benchmark
+    public int move() {
+        if (engine.isGameOver) {
+            engine.restart();
+        }
+        tick++;
+        engine.step((tick & 15) == 0 ? directions[(tick >> 4) & 3] : ' ');
+        return engine.score;
+    }
+}
@@ -0,0 +1,43 @@
+package pacman;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// A tick with many arcade-targeting ghosts: the default map tiled scale times each way holds
+// 4 * scale * scale of them. Decisions on the ticking thread or spread over GhostDecisionPool.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GhostBenchmark {
+    @Param({"1", "3", "6"})
+    int scale;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    private final char[] directions = {'U', 'R', 'D', 'L'};
+    private GameEngine engine;
+    private int tick;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Maze maze = new Maze("tiled-" + scale, SyntheticMazes.scaled(scale));
+        engine = new GameEngine(maze, 42, GameSettings.DEFAULT, new ChaseScatterGhostPolicy());
+        engine.parallelGhosts = parallel;
+        engine.navGraph(); // Built once, outside the measurement
+    }
+
+    @Benchmark
+    public int move() {
+        if (engine.isGameOver) {
+            engine.restart();
+        }
+        tick++;
+        engine.step((tick & 15) == 0 ? directions[(tick >> 4) & 3] : ' ');
+        return engine.score;
+    }
+}
@@ -0,0 +1,30 @@
+package pacman;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of refilling the tile grid and item bitsets from the tile map
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LoadMapBenchmark {
+    @Param({"1", "2", "5", "10"})
+    int scale;
+
+    private GameEngine engine;
+
+    @Setup
+    public void setUp() {
+        engine = SyntheticMazes.engine(scale, 42);
+    }
+
+    @Benchmark
+    public int loadMap() {
+        engine.loadMap();
+        return engine.foodCount;
+    }
+}
@@ -0,0 +1,45 @@
+package pacman;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// ChaseScatterGhostPolicy on MazeGenerator boards: building the NavGraph, and a tick once it is
+// built. Only the 21x21 board is small enough for the all-pairs node table; the bigger ones
+// are over its cap, so ghosts use per-target distance fields instead.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NavGraphBenchmark {
+    @Param({"21", "101", "201", "501", "1000"})
+    int size;
+
+    private final char[] directions = {'U', 'R', 'D', 'L'};
+    private Maze maze;
+    private GameEngine engine;
+    private int tick;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        maze = MazeGenerator.generate(size, size, 42);
+        engine = new GameEngine(maze, 42, GameSettings.DEFAULT, new ChaseScatterGhostPolicy());
+    }
+
+    @Benchmark
+    public NavGraph build() {
+        return new NavGraph(maze.walls, maze.rows, maze.columns, (byte) 1, maze.tunnelRows);
+    }
+
+    @Benchmark
+    public int chaseMove() {
+        if (engine.isGameOver) {
+            engine.restart();
+        }
+        tick++;
+        engine.step((tick & 15) == 0 ? directions[(tick >> 4) & 3] : ' ');
+        return engine.score;
+    }
+}
@@ -0,0 +1,46 @@
+package pacman;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// Cost of drawing one frame into an offscreen image
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class RenderBenchmark {
+    @Param({"1", "2", "5", "10"})
+    int scale;
+
+    private PacManPanel panel;
+    private BufferedImage frame;
+    private Graphics2D graphics;
+
+    @Setup
+    public void setUp() {
+        GameEngine engine = SyntheticMazes.engine(scale, 42);
+        panel = new PacManPanel(engine);
+        panel.gameLoop.stop(); // The benchmark drives the panel, not the Swing timer
+        panel.renderer.spritesLoaded().join();
+        frame = new BufferedImage(engine.BOARD_WIDTH, engine.BOARD_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        graphics = frame.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage draw() {
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(0, 0, frame.getWidth(), frame.getHeight());
+        panel.draw(graphics);
+        return frame;
+    }
+}
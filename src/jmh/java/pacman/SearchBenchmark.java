@@ -0,0 +1,50 @@
+package pacman;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// One SearchPacmanPolicy move with a fixed number of iterations on one thread, and the state copy
+// every iteration starts from. An iteration plays up to 56 ticks on the copy.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+    @Param({"100"})
+    int iterations;
+
+    private SearchPacmanPolicy policy;
+    private GameEngine engine;
+    private GameEngine copy;
+    private byte[] state;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        policy = new SearchPacmanPolicy(Long.MAX_VALUE / 2_000_000L, iterations, 1);
+        engine = SyntheticMazes.engine(1, 42);
+        copy = SyntheticMazes.engine(1, 42);
+        for (int i = 0; i < 40; i++) {
+            engine.step(i == 0 ? 'L' : ' ');
+        }
+        state = engine.snapshot();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        policy.close();
+    }
+
+    @Benchmark
+    public char move() {
+        return policy.nextDirection(engine);
+    }
+
+    @Benchmark
+    public int copyState() {
+        copy.restore(state);
+        return copy.score;
+    }
+}
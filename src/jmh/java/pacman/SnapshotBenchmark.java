@@ -0,0 +1,66 @@
+package pacman;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// SnapshotFile.save() after every tick, and rewinding a second back, at several maze sizes.
+// Every operation includes one tick; TickBenchmark has its cost on its own.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SnapshotBenchmark {
+    @Param({"1", "5", "10"})
+    int scale;
+
+    private final char[] directions = {'U', 'R', 'D', 'L'};
+    private Path path;
+    private SnapshotFile snapshots;
+    private GameEngine engine;
+    private GameEngine rewound;
+    private int tick;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        path = Files.createTempFile("pacman", ".pms");
+        engine = SyntheticMazes.engine(scale, 42);
+        rewound = SyntheticMazes.engine(scale, 42);
+        snapshots = SnapshotFile.create(path, engine, 64 << 20);
+        for (int i = 0; i < 100; i++) {
+            advance();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        snapshots.close();
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    public long save() {
+        advance();
+        return snapshots.save(engine);
+    }
+
+    @Benchmark
+    public boolean rewind() {
+        advance();
+        snapshots.save(engine);
+        return snapshots.restore(rewound, engine.tickCount - 20);
+    }
+
+    private void advance() {
+        if (engine.isGameOver) {
+            engine.restart();
+        }
+        tick++;
+        engine.step((tick & 15) == 0 ? directions[(tick >> 4) & 3] : ' ');
+    }
+}
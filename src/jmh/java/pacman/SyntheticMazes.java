@@ -0,0 +1,41 @@
+package pacman;
+
+// Builds larger mazes for benchmarks, by tiling the default map or with MazeGenerator
+public class SyntheticMazes {
+    // Repeats the default 19x21 map factor times in each direction, keeping a single pacman.
+    // Copies sit side by side through the tunnel row, and stacked ones get two openings in the
+    // walls between them so every dot stays reachable.
+    static String[] scaled(int factor) {
+        String[] base = GameEngine.DEFAULT_TILE_MAP;
+        String[] maze = new String[base.length * factor];
+        for (int tileRow = 0; tileRow < factor; tileRow++) {
+            for (int r = 0; r < base.length; r++) {
+                boolean openTop = r == 0 && tileRow > 0;
+                boolean openBottom = r == base.length - 1 && tileRow < factor - 1;
+                StringBuilder row = new StringBuilder();
+                for (int tileColumn = 0; tileColumn < factor; tileColumn++) {
+                    boolean keepPacman = tileRow == 0 && tileColumn == 0;
+                    StringBuilder copy = new StringBuilder(keepPacman ? base[r] : base[r].replace('P', ' '));
+                    if (openTop || openBottom) {
+                        copy.setCharAt(3, ' ');
+                        copy.setCharAt(copy.length() - 4, ' ');
+                    }
+                    row.append(copy);
+                }
+                maze[tileRow * base.length + r] = row.toString();
+            }
+        }
+        return maze;
+    }
+
+    static GameEngine engine(int factor, long seed) {
+        return new GameEngine(scaled(factor), seed, GameSettings.DEFAULT, new RandomGhostPolicy());
+    }
+
+    // A size x size maze from MazeGenerator, with the default ghost AI. Past a few hundred junctions
+    // its NavGraph drops the all-pairs table for per-target distance fields.
+    static GameEngine generated(int size, long seed) {
+        return new GameEngine(MazeGenerator.generate(size, size, seed), seed, GameSettings.DEFAULT,
+                new ChaseScatterGhostPolicy());
+    }
+}
@@ -0,0 +1,38 @@
+package pacman;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of one game tick (GameEngine.move) at several maze sizes
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TickBenchmark {
+    @Param({"1", "2", "5", "10"})
+    int scale;
+
+    private final char[] directions = {'U', 'R', 'D', 'L'};
+    private GameEngine engine;
+    private int tick;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        engine = SyntheticMazes.engine(scale, 42);
+        tick = 0;
+    }
+
+    @Benchmark
+    public int move() {
+        if (engine.isGameOver) {
+            engine.restart();
+        }
+        // Change direction every few ticks so pacman keeps turning into walls and corners
+        tick++;
+        engine.step((tick & 15) == 0 ? directions[(tick >> 4) & 3] : ' ');
+        return engine.score;
+    }
+}
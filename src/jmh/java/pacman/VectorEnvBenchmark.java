@@ -0,0 +1,45 @@
+package pacman;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// One VectorEnv.step() over a batch of environments; divide by envs for the cost per env-step
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VectorEnvBenchmark {
+    @Param({"64", "1024"})
+    int envs;
+
+    @Param({"1", "4"})
+    int parallelism;
+
+    private VectorEnv env;
+    private int[] actions;
+    private int tick;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        env = new VectorEnv(envs, parallelism);
+        actions = new int[envs];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        env.close();
+    }
+
+    @Benchmark
+    public float step() {
+        tick++;
+        for (int i = 0; i < envs; i++) {
+            actions[i] = ((tick + i) & 15) == 0 ? (tick >> 4) + i & 3 : VectorEnv.NO_ACTION;
+        }
+        env.step(actions);
+        return env.rewards[0];
+    }
+}
@@ -0,0 +1,88 @@
+package pacman;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+// Plays many independent headless games in parallel and aggregates their results.
+// Every game gets its own engine, Random and policy instances built from its seed.
+public class BatchRunner {
+    private final GameSettings settings;
+    private final Supplier<GhostPolicy> ghostPolicies;
+    private final LongFunction<PacmanPolicy> pacmanPolicies;
+    private final long maxTicks;
+    private final int parallelism;
+
+    public BatchRunner(GameSettings settings, Supplier<GhostPolicy> ghostPolicies,
+                       LongFunction<PacmanPolicy> pacmanPolicies, long maxTicks) {
+        this(settings, ghostPolicies, pacmanPolicies, maxTicks, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchRunner(GameSettings settings, Supplier<GhostPolicy> ghostPolicies,
+                       LongFunction<PacmanPolicy> pacmanPolicies, long maxTicks, int parallelism) {
+        this.settings = settings;
+        this.ghostPolicies = ghostPolicies;
+        this.pacmanPolicies = pacmanPolicies;
+        this.maxTicks = maxTicks;
+        this.parallelism = parallelism;
+    }
+
+    public BatchStats run(long[] seeds) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> IntStream.range(0, seeds.length)
+                    .parallel()
+                    .mapToObj(i -> play(seeds[i]))
+                    .collect(BatchStats::new, BatchStats::add, BatchStats::merge)
+            ).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public GameResult play(long seed) {
+        GameEngine engine = new GameEngine(seed, settings, ghostPolicies.get());
+        PacmanPolicy pacmanPolicy = pacmanPolicies.apply(seed);
+        int[] livesLostPerLevel = new int[BatchStats.MAX_TRACKED_LEVELS];
+
+        while (!engine.isGameOver && engine.tickCount < maxTicks) {
+            int lives = engine.lives;
+            int level = engine.level;
+            engine.step(pacmanPolicy.nextDirection(engine));
+            if (engine.lives < lives) {
+                livesLostPerLevel[Math.min(level, BatchStats.MAX_TRACKED_LEVELS) - 1] += lives - engine.lives;
+            }
+        }
+        return new GameResult(seed, engine.score, engine.tickCount, engine.level, livesLostPerLevel);
+    }
+
+    // Usage: BatchRunner [games] [maxTicks] [powerPelletDuration] [dotsForCherry] [ghostTurnChance]
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        long maxTicks = args.length > 1 ? Long.parseLong(args[1]) : 100_000;
+        int powerPelletDuration = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int dotsForCherry = args.length > 3 ? Integer.parseInt(args[3]) : 70;
+        // Without a turn chance the ghosts use chase/scatter targeting instead of a random walk
+        int ghostTurnChance = args.length > 4 ? Integer.parseInt(args[4]) : -1;
+
+        long[] seeds = new long[games];
+        for (int i = 0; i < games; i++) {
+            seeds[i] = i;
+        }
+
+        BatchRunner runner = new BatchRunner(
+                new GameSettings(powerPelletDuration, dotsForCherry),
+                () -> ghostTurnChance < 0 ? new ChaseScatterGhostPolicy() : new RandomGhostPolicy(ghostTurnChance),
+                RandomPacmanPolicy::new,
+                maxTicks
+        );
+
+        long start = System.nanoTime();
+        BatchStats stats = runner.run(seeds);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.print(stats);
+        System.out.printf("Simulated in %.2f s on %d threads%n", seconds, runner.parallelism);
+    }
+}
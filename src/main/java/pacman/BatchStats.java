@@ -0,0 +1,99 @@
+package pacman;
+
+import java.util.Arrays;
+
+// Aggregated results of a batch of games. Each fork-join leaf fills its own instance and
+// instances are merged afterwards, so nothing is shared between worker threads.
+public class BatchStats {
+    static final int MAX_TRACKED_LEVELS = 16; // Deeper levels are counted in the last slot
+
+    private int games = 0;
+    private int[] scores = new int[64];
+    private long totalSurvivalTicks = 0;
+    private long maxSurvivalTicks = 0;
+    private final long[] livesLostPerLevel = new long[MAX_TRACKED_LEVELS];
+    private final long[] gamesReachingLevel = new long[MAX_TRACKED_LEVELS];
+
+    public void add(GameResult result) {
+        if (games == scores.length) {
+            scores = Arrays.copyOf(scores, games * 2);
+        }
+        scores[games++] = result.score();
+        totalSurvivalTicks += result.survivalTicks();
+        maxSurvivalTicks = Math.max(maxSurvivalTicks, result.survivalTicks());
+
+        int[] lost = result.livesLostPerLevel();
+        for (int i = 0; i < lost.length; i++) {
+            livesLostPerLevel[i] += lost[i];
+        }
+        for (int i = 0; i < Math.min(result.levelReached(), MAX_TRACKED_LEVELS); i++) {
+            gamesReachingLevel[i]++;
+        }
+    }
+
+    public void merge(BatchStats other) {
+        if (games + other.games > scores.length) {
+            scores = Arrays.copyOf(scores, games + other.games);
+        }
+        System.arraycopy(other.scores, 0, scores, games, other.games);
+        games += other.games;
+        totalSurvivalTicks += other.totalSurvivalTicks;
+        maxSurvivalTicks = Math.max(maxSurvivalTicks, other.maxSurvivalTicks);
+        for (int i = 0; i < MAX_TRACKED_LEVELS; i++) {
+            livesLostPerLevel[i] += other.livesLostPerLevel[i];
+            gamesReachingLevel[i] += other.gamesReachingLevel[i];
+        }
+    }
+
+    public int games() {
+        return games;
+    }
+
+    public double meanScore() {
+        long total = 0;
+        for (int i = 0; i < games; i++) {
+            total += scores[i];
+        }
+        return games == 0 ? 0 : (double) total / games;
+    }
+
+    // Score at the given percentile (0-100) of the distribution
+    public int scorePercentile(double percentile) {
+        if (games == 0) {
+            return 0;
+        }
+        int[] sorted = Arrays.copyOf(scores, games);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * games) - 1;
+        return sorted[Math.max(0, Math.min(index, games - 1))];
+    }
+
+    public double meanSurvivalTicks() {
+        return games == 0 ? 0 : (double) totalSurvivalTicks / games;
+    }
+
+    public long maxSurvivalTicks() {
+        return maxSurvivalTicks;
+    }
+
+    // Average lives lost on a level by the games that reached it (level is 1-based)
+    public double meanLivesLost(int level) {
+        long reached = gamesReachingLevel[level - 1];
+        return reached == 0 ? 0 : (double) livesLostPerLevel[level - 1] / reached;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Games: ").append(games).append('\n');
+        builder.append(String.format("Score: mean %.1f, p10 %d, p50 %d, p90 %d, p99 %d, max %d%n",
+                meanScore(), scorePercentile(10), scorePercentile(50), scorePercentile(90),
+                scorePercentile(99), scorePercentile(100)));
+        builder.append(String.format("Survival ticks: mean %.1f, max %d%n", meanSurvivalTicks(), maxSurvivalTicks));
+        for (int level = 1; level <= MAX_TRACKED_LEVELS && gamesReachingLevel[level - 1] > 0; level++) {
+            builder.append(String.format("Level %d: reached by %d, lives lost %.2f%n",
+                    level, gamesReachingLevel[level - 1], meanLivesLost(level)));
+        }
+        return builder.toString();
+    }
+}
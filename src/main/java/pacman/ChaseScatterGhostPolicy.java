@@ -0,0 +1,123 @@
+package pacman;
+
+import java.util.Random;
+
+// Arcade-style ghost targeting. In the engine's scatter mode each ghost heads for its own
+// corner, in chase mode each targets pacman in its own way, and frightened ghosts move randomly.
+// Every decision is a handful of NavGraph distance lookups.
+public class ChaseScatterGhostPolicy implements GhostPolicy {
+
+    @Override
+    public int atIntersection(GameEngine engine, int ghost, int openDirections, Random random) {
+        return chooseDirection(engine, ghost, openDirections, random);
+    }
+
+    @Override
+    public int afterCollision(GameEngine engine, int ghost, int openDirections, Random random) {
+        return chooseDirection(engine, ghost, openDirections, random);
+    }
+
+    @Override
+    public boolean parallelSafe() {
+        return true;
+    }
+
+    @Override
+    public String spec() {
+        return "chase";
+    }
+
+    private int chooseDirection(GameEngine engine, int ghost, int openDirections, Random random) {
+        // Ghosts never turn back unless it is the only way out
+        int forward = openDirections & ~(1 << GameEngine.reverseIndex(engine.direction[ghost]));
+        if (forward != 0) {
+            openDirections = forward;
+        }
+
+        if (engine.ghostMode[ghost] == GameEngine.FRIGHTENED) {
+            return RandomGhostPolicy.randomOpenDirection(openDirections, random);
+        }
+
+        NavGraph navGraph = engine.navGraph();
+        int target = navGraph.nearestWalkable(targetTile(engine, ghost));
+        int row = engine.actorY[ghost] / GameEngine.TILE_UNITS;
+        int column = engine.actorX[ghost] / GameEngine.TILE_UNITS;
+        boolean onBoard = column >= 0 && column < engine.COLUMN_COUNT; // Not passing through a tunnel
+
+        int best = GameEngine.NO_DIRECTION;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            if ((openDirections & (1 << i)) == 0) {
+                continue;
+            }
+            int neighbour = onBoard ? navGraph.neighbour(row * engine.COLUMN_COUNT + column, i) : -1;
+            int distance = neighbour >= 0 ? navGraph.distance(neighbour, target) : NavGraph.UNREACHABLE;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    // Tile the ghost is heading for, clamped to the board (it may still be a wall)
+    private int targetTile(GameEngine engine, int ghost) {
+        int rows = engine.ROW_COUNT;
+        int columns = engine.COLUMN_COUNT;
+        int targetRow;
+        int targetColumn;
+
+        int pacmanRow = (engine.actorY[GameEngine.PACMAN] + GameEngine.TILE_UNITS / 2) / GameEngine.TILE_UNITS;
+        int pacmanColumn = (engine.actorX[GameEngine.PACMAN] + GameEngine.TILE_UNITS / 2) / GameEngine.TILE_UNITS;
+        int pacmanDirection = engine.direction[GameEngine.PACMAN];
+        char kind = engine.actorKind[ghost];
+
+        if (engine.ghostMode[ghost] == GameEngine.SCATTER) {
+            // Each ghost retreats to its own corner
+            targetRow = kind == 'r' || kind == 'p' ? 0 : rows - 1;
+            targetColumn = kind == 'r' || kind == 'b' ? columns - 1 : 0;
+        } else {
+            switch (kind) {
+                case 'p' -> {
+                    // Pink ambushes four tiles ahead of pacman
+                    targetRow = pacmanRow + 4 * GameEngine.directionDeltaY[pacmanDirection];
+                    targetColumn = pacmanColumn + 4 * GameEngine.directionDeltaX[pacmanDirection];
+                }
+
+                case 'b' -> {
+                    // Blue doubles the vector from its house's red to two tiles ahead of pacman
+                    int red = engine.maze.houseLeaders[ghost];
+                    int aheadRow = pacmanRow + 2 * GameEngine.directionDeltaY[pacmanDirection];
+                    int aheadColumn = pacmanColumn + 2 * GameEngine.directionDeltaX[pacmanDirection];
+                    int redRow = red < 0 ? aheadRow : engine.actorY[red] / GameEngine.TILE_UNITS;
+                    int redColumn = red < 0 ? aheadColumn : engine.actorX[red] / GameEngine.TILE_UNITS;
+                    targetRow = 2 * aheadRow - redRow;
+                    targetColumn = 2 * aheadColumn - redColumn;
+                }
+
+                case 'o' -> {
+                    // Orange chases from afar but backs off to its corner when within eight tiles
+                    int dx = pacmanColumn - engine.actorX[ghost] / GameEngine.TILE_UNITS;
+                    int dy = pacmanRow - engine.actorY[ghost] / GameEngine.TILE_UNITS;
+                    if (dx * dx + dy * dy > 64) {
+                        targetRow = pacmanRow;
+                        targetColumn = pacmanColumn;
+                    } else {
+                        targetRow = rows - 1;
+                        targetColumn = 0;
+                    }
+                }
+
+                default -> {
+                    // Red goes straight for pacman
+                    targetRow = pacmanRow;
+                    targetColumn = pacmanColumn;
+                }
+            }
+        }
+
+        targetRow = Math.max(0, Math.min(targetRow, rows - 1));
+        targetColumn = Math.max(0, Math.min(targetColumn, columns - 1));
+        return targetRow * columns + targetColumn;
+    }
+}
@@ -0,0 +1,44 @@
+package pacman;
+
+// Prints every game event on its own line, for -Dpacman.events=true
+class EventLog implements GameEventListener {
+    @Override
+    public void dotEaten(long tick, int tile, int points) {
+        System.out.println(tick + " dot eaten at " + tile + " +" + points);
+    }
+
+    @Override
+    public void pelletEaten(long tick, int tile, int points) {
+        System.out.println(tick + " power pellet eaten at " + tile + " +" + points);
+    }
+
+    @Override
+    public void ghostEaten(long tick, int ghost, int points) {
+        System.out.println(tick + " ghost " + ghost + " eaten +" + points);
+    }
+
+    @Override
+    public void pacmanDied(long tick, int ghost, int livesLeft) {
+        System.out.println(tick + " caught by ghost " + ghost + ", " + livesLeft + " lives left");
+    }
+
+    @Override
+    public void cherrySpawned(long tick, int tile, Fruit fruit) {
+        System.out.println(tick + " " + fruit + " spawned at " + tile);
+    }
+
+    @Override
+    public void cherryEaten(long tick, Fruit fruit, int points) {
+        System.out.println(tick + " " + fruit + " eaten +" + points);
+    }
+
+    @Override
+    public void levelCleared(long tick, int level) {
+        System.out.println(tick + " level " + level + " cleared");
+    }
+
+    @Override
+    public void eventsDropped(long count) {
+        System.out.println(count + " events dropped");
+    }
+}
@@ -0,0 +1,359 @@
+package pacman;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Turns rendered frames into a PNG sequence, an animated GIF or a video through a local ffmpeg,
+// picked by the output name: a .gif file, any other extension for ffmpeg, none for a directory
+// of PNGs. Frames come from a small pool of offscreen images and go through two stages: encoding
+// on a pool of workers, then writing in frame order on a single thread. A frame's image returns
+// to the pool once it is written, so acquire() blocks when encoding falls behind.
+public class FrameExporter implements AutoCloseable {
+    private final Path output;
+    private final Encoder encoder;
+    private final BlockingQueue<BufferedImage> freeFrames;
+    private final ExecutorService workers;
+    private final ExecutorService writer;
+    private CompletableFuture<Void> written = CompletableFuture.completedFuture(null);
+    private int frameCount = 0;
+    private boolean closed = false;
+
+    // The two stages of an output format. encode() runs on any worker and may not keep the frame;
+    // write() gets the results one at a time in frame order.
+    private interface Encoder {
+        int imageType();
+
+        Object encode(int index, BufferedImage frame) throws IOException;
+
+        void write(Object encoded) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    public FrameExporter(Path output, int width, int height, int framesPerSecond) throws IOException {
+        this(output, width, height, framesPerSecond, Runtime.getRuntime().availableProcessors());
+    }
+
+    public FrameExporter(Path output, int width, int height, int framesPerSecond, int workerCount)
+            throws IOException {
+        this.output = output;
+        String name = output.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String extension = dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+        if (extension.isEmpty()) {
+            encoder = new PngSequence(Files.createDirectories(output));
+        } else if (extension.equals("gif")) {
+            encoder = new Gif(output, framesPerSecond);
+        } else {
+            encoder = new Ffmpeg(output, width, height, framesPerSecond);
+        }
+
+        // Enough frames to keep every worker busy while the writer and the capture side work on others
+        int frames = workerCount * 2 + 2;
+        freeFrames = new ArrayBlockingQueue<>(frames);
+        for (int i = 0; i < frames; i++) {
+            freeFrames.add(new BufferedImage(width, height, encoder.imageType()));
+        }
+        workers = Executors.newFixedThreadPool(workerCount, task -> daemon(task, "frame-encoder"));
+        writer = Executors.newSingleThreadExecutor(task -> daemon(task, "frame-writer"));
+    }
+
+    public Path output() {
+        return output;
+    }
+
+    public int frameCount() {
+        return frameCount;
+    }
+
+    // An image to draw the next frame into, waiting for one to be written if all are in use
+    public BufferedImage acquire() throws InterruptedException {
+        return freeFrames.take();
+    }
+
+    // Like acquire(), but null instead of waiting
+    public BufferedImage tryAcquire() {
+        return freeFrames.poll();
+    }
+
+    // Queues a frame from acquire() as the next one. Not thread safe: frames are numbered in call order.
+    public void submit(BufferedImage frame) throws IOException {
+        if (written.isCompletedExceptionally() || closed) {
+            freeFrames.add(frame);
+            close(); // Throws the write's failure the first time
+            throw new IOException("Could not export " + output);
+        }
+        int index = frameCount++;
+        CompletableFuture<Object> encoded = CompletableFuture.supplyAsync(() -> {
+            try {
+                return encoder.encode(index, frame);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, workers);
+        written = written.thenCombineAsync(encoded, (previous, result) -> {
+            try {
+                encoder.write(result);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return (Void) null;
+        }, writer).whenComplete((ignored, e) -> freeFrames.add(frame));
+    }
+
+    // Waits for every frame to be written and finishes the file
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            written.join();
+            encoder.finish();
+        } catch (CompletionException e) {
+            encoder.finish();
+            Throwable cause = e.getCause() instanceof UncheckedIOException unchecked ? unchecked.getCause() : e.getCause();
+            throw new IOException("Could not export " + output, cause);
+        } finally {
+            workers.shutdown();
+            writer.shutdown();
+        }
+    }
+
+    // Draws a whole engine into a frame the size of its board
+    static void draw(GameRenderer renderer, GameEngine engine, BufferedImage frame) {
+        Graphics2D g = frame.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, frame.getWidth(), frame.getHeight());
+        renderer.render(g, engine);
+        g.dispose();
+    }
+
+    // Renders every tick of a replay from `from` to `to`, one frame per `every` ticks
+    public static void export(Replay replay, Path output, long from, long to, int every) throws IOException {
+        ReplayPlayer player = new ReplayPlayer(replay);
+        GameEngine engine = player.engine();
+        GameRenderer renderer = new GameRenderer(null);
+        renderer.spritesLoaded().join();
+        int framesPerSecond = Math.max(1, (int) (1_000_000_000L / GameLoop.TICK_NANOS / every));
+
+        try (FrameExporter exporter = new FrameExporter(output, engine.BOARD_WIDTH, engine.BOARD_HEIGHT, framesPerSecond)) {
+            player.seek(from);
+            while (true) {
+                BufferedImage frame = exporter.acquire();
+                draw(renderer, engine, frame);
+                exporter.submit(frame);
+                if (player.isFinished() || player.tick() >= to) {
+                    break;
+                }
+                player.playTo(player.tick() + every);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted exporting " + output, e);
+        }
+    }
+
+    // Arguments: format (png, gif, or a video extension such as mp4 for ffmpeg), output directory,
+    // replay files. Exports each whole replay, one frame per tick, named after it.
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        String format = args[0].toLowerCase(Locale.ROOT);
+        Path directory = Files.createDirectories(Path.of(args[1]));
+        for (int i = 2; i < args.length; i++) {
+            Path replayPath = Path.of(args[i]);
+            String name = replayPath.getFileName().toString().replaceFirst("\\.[^.]*$", "");
+            Path output = directory.resolve(format.equals("png") ? name : name + "." + format);
+            Replay replay = Replay.load(replayPath);
+            long start = System.nanoTime();
+            export(replay, output, 0, replay.ticks, 1);
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%s: %d ticks in %.1f s (%.0f frames/s)%n",
+                    output, replay.ticks, elapsed / 1e9, (replay.ticks + 1) * 1e9 / elapsed);
+        }
+    }
+
+    private static Thread daemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    // frame-000000.png and so on; each worker writes its own files, so writing has nothing left to do
+    private static final class PngSequence implements Encoder {
+        private final Path directory;
+
+        PngSequence(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public int imageType() {
+            return BufferedImage.TYPE_INT_RGB;
+        }
+
+        @Override
+        public Object encode(int index, BufferedImage frame) throws IOException {
+            ImageIO.write(frame, "png", directory.resolve(String.format("frame-%06d.png", index)).toFile());
+            return null;
+        }
+
+        @Override
+        public void write(Object encoded) {
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    // Workers reduce frames to the default 256-colour palette, the writer appends them looping forever
+    private static final class Gif implements Encoder {
+        private final ImageOutputStream stream;
+        private final ImageWriter writer;
+        private final int delayCentiseconds;
+        private IIOMetadata metadata;
+
+        Gif(Path output, int framesPerSecond) throws IOException {
+            Files.deleteIfExists(output);
+            stream = ImageIO.createImageOutputStream(output.toFile());
+            writer = ImageIO.getImageWritersByFormatName("gif").next();
+            writer.setOutput(stream);
+            writer.prepareWriteSequence(null);
+            delayCentiseconds = Math.max(1, 100 / framesPerSecond);
+        }
+
+        @Override
+        public int imageType() {
+            return BufferedImage.TYPE_INT_RGB;
+        }
+
+        @Override
+        public Object encode(int index, BufferedImage frame) {
+            BufferedImage indexed = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_BYTE_INDEXED);
+            Graphics2D g = indexed.createGraphics();
+            g.drawImage(frame, 0, 0, null);
+            g.dispose();
+            return indexed;
+        }
+
+        @Override
+        public void write(Object encoded) throws IOException {
+            BufferedImage image = (BufferedImage) encoded;
+            if (metadata == null) {
+                metadata = frameMetadata(image);
+            }
+            writer.writeToSequence(new IIOImage(image, null, metadata), null);
+        }
+
+        // Every frame shares the palette, so one set of metadata with the delay and looping does for all
+        private IIOMetadata frameMetadata(BufferedImage image) throws IOException {
+            IIOMetadata frameMetadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), null);
+            String format = frameMetadata.getNativeMetadataFormatName();
+            IIOMetadataNode root = (IIOMetadataNode) frameMetadata.getAsTree(format);
+
+            IIOMetadataNode control = new IIOMetadataNode("GraphicControlExtension");
+            control.setAttribute("disposalMethod", "none");
+            control.setAttribute("userInputFlag", "FALSE");
+            control.setAttribute("transparentColorFlag", "FALSE");
+            control.setAttribute("delayTime", Integer.toString(delayCentiseconds));
+            control.setAttribute("transparentColorIndex", "0");
+            root.appendChild(control);
+
+            IIOMetadataNode extensions = new IIOMetadataNode("ApplicationExtensions");
+            IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+            loop.setAttribute("applicationID", "NETSCAPE");
+            loop.setAttribute("authenticationCode", "2.0");
+            loop.setUserObject(new byte[]{1, 0, 0}); // Loop count 0: forever
+            extensions.appendChild(loop);
+            root.appendChild(extensions);
+
+            frameMetadata.setFromTree(format, root);
+            return frameMetadata;
+        }
+
+        @Override
+        public void finish() throws IOException {
+            try {
+                writer.endWriteSequence();
+            } finally {
+                writer.dispose();
+                stream.close();
+            }
+        }
+    }
+
+    // Raw BGR frames piped into ffmpeg, which picks the codec from the output extension
+    private static final class Ffmpeg implements Encoder {
+        private final Process process;
+        private final OutputStream pipe;
+
+        Ffmpeg(Path output, int width, int height, int framesPerSecond) throws IOException {
+            try {
+                process = new ProcessBuilder("ffmpeg", "-y", "-loglevel", "error",
+                        "-f", "rawvideo", "-pix_fmt", "bgr24", "-s", width + "x" + height,
+                        "-r", Integer.toString(framesPerSecond), "-i", "-",
+                        "-vf", "pad=ceil(iw/2)*2:ceil(ih/2)*2", "-pix_fmt", "yuv420p",
+                        output.toString())
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+            } catch (IOException e) {
+                throw new IOException("Exporting " + output + " needs ffmpeg on the PATH", e);
+            }
+            pipe = process.getOutputStream();
+        }
+
+        @Override
+        public int imageType() {
+            return BufferedImage.TYPE_3BYTE_BGR;
+        }
+
+        @Override
+        public Object encode(int index, BufferedImage frame) {
+            // The frame stays out of the pool until written, so its pixels can go straight down the pipe
+            return ((DataBufferByte) frame.getRaster().getDataBuffer()).getData();
+        }
+
+        @Override
+        public void write(Object encoded) throws IOException {
+            pipe.write((byte[]) encoded);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            pipe.close();
+            try {
+                int exitCode = process.waitFor();
+                if (exitCode != 0) {
+                    throw new IOException("ffmpeg exited with " + exitCode);
+                }
+            } catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for ffmpeg", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package pacman;
+
+import com.sun.management.ThreadMXBean;
+import jdk.jfr.EventType;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Timing of the game loop: logic tick time, time spent in move() and loadMap(), render time,
+// dropped frames, how long frames wait in the EDT queue, collision checks and ghost redirects
+// per tick, and the latency from a key press to the first tick that moves pacman in the
+// requested direction. GC figures come from the platform MXBeans on demand; the allocation rate
+// is sampled from them once a second by the loop thread, so reading it changes nothing.
+// Turning it off skips every measurement apart from dropped frames.
+public class FrameMetrics implements FrameMetricsMBean {
+    static final String OBJECT_NAME = "pacman:type=FrameMetrics";
+
+    private final SampleWindow tickTimes = new SampleWindow(1024);
+    private final SampleWindow moveTimes = new SampleWindow(1024);
+    private final SampleWindow loadMapTimes = new SampleWindow(64);
+    private final SampleWindow renderTimes = new SampleWindow(1024);
+    private final SampleWindow edtDelays = new SampleWindow(1024);
+    private final SampleWindow collisionChecks = new SampleWindow(1024);
+    private final SampleWindow ghostRedirects = new SampleWindow(1024);
+    private final SampleWindow inputLatencies = new SampleWindow(256);
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong totalGhostRedirects = new AtomicLong();
+    private volatile boolean enabled = !"false".equals(System.getProperty("pacman.metrics.enabled"));
+
+    // Asked before building a TickEvent, so no event is allocated while no recording wants them
+    private static final EventType TICK_EVENTS = EventType.getEventType(TickEvent.class);
+
+    private static final long ALLOCATION_SAMPLE_NANOS = 1_000_000_000L;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean() instanceof ThreadMXBean bean
+            && bean.isThreadAllocatedMemorySupported() ? bean : null; // Null where the JVM cannot tell
+    private long lastAllocatedBytes = -1; // Loop thread only
+    private long lastAllocationCheck;
+    private volatile double allocationRate = 0;
+
+    void recordTick(long nanos) {
+        tickTimes.record(nanos);
+    }
+
+    // What one engine step did, measured by the caller around GameEngine.step()
+    void recordStep(long moveNanos, long collisions, long redirects, long loadMapNanos, int score, int level) {
+        moveTimes.record(moveNanos);
+        collisionChecks.record(collisions);
+        ghostRedirects.record(redirects);
+        totalGhostRedirects.addAndGet(redirects);
+        if (loadMapNanos >= 0) {
+            loadMapTimes.record(loadMapNanos);
+        }
+
+        if (TICK_EVENTS.isEnabled()) {
+            TickEvent event = new TickEvent();
+            event.moveNanos = moveNanos;
+            event.collisionChecks = (int) collisions;
+            event.ghostRedirects = (int) redirects;
+            event.mapLoaded = loadMapNanos >= 0;
+            event.score = score;
+            event.level = level;
+            event.commit();
+        }
+    }
+
+    void recordRender(long nanos) {
+        renderTimes.record(nanos);
+    }
+
+    void recordEdtDelay(long nanos) {
+        edtDelays.record(nanos);
+    }
+
+    void recordInputLatency(long nanos) {
+        inputLatencies.record(nanos);
+    }
+
+    void recordDroppedFrame() {
+        droppedFrames.incrementAndGet();
+    }
+
+    // Called by the loop thread; works out the allocation rate over the last second once it has passed
+    void sampleAllocationRate(long now) {
+        if (threads == null || (lastAllocatedBytes >= 0 && now - lastAllocationCheck < ALLOCATION_SAMPLE_NANOS)) {
+            return;
+        }
+        long bytes = threads.getTotalThreadAllocatedBytes();
+        if (lastAllocatedBytes >= 0) {
+            allocationRate = (bytes - lastAllocatedBytes) / 1e6 / ((now - lastAllocationCheck) / 1e9);
+        }
+        lastAllocatedBytes = bytes;
+        lastAllocationCheck = now;
+    }
+
+    // Registers with the platform MBean server unless another instance already holds the name.
+    // Returns whether this instance is now registered.
+    boolean register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                return false;
+            }
+            server.registerMBean(this, name);
+            return true;
+        } catch (JMException e) {
+            return false;
+        }
+    }
+
+    void unregister() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (JMException ignored) {
+            // Not registered
+        }
+    }
+
+    public SampleWindow tickTimes() {
+        return tickTimes;
+    }
+
+    public SampleWindow renderTimes() {
+        return renderTimes;
+    }
+
+    public SampleWindow inputLatencies() {
+        return inputLatencies;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getTickCount() {
+        return tickTimes.count();
+    }
+
+    @Override
+    public double getTickP50Millis() {
+        return tickTimes.percentile(50) / 1e6;
+    }
+
+    @Override
+    public double getTickP99Millis() {
+        return tickTimes.percentile(99) / 1e6;
+    }
+
+    @Override
+    public double getMoveP50Micros() {
+        return moveTimes.percentile(50) / 1e3;
+    }
+
+    @Override
+    public double getMoveP99Micros() {
+        return moveTimes.percentile(99) / 1e3;
+    }
+
+    @Override
+    public double getDrawP50Millis() {
+        return renderTimes.percentile(50) / 1e6;
+    }
+
+    @Override
+    public double getDrawP99Millis() {
+        return renderTimes.percentile(99) / 1e6;
+    }
+
+    @Override
+    public long getLoadMapCount() {
+        return loadMapTimes.count();
+    }
+
+    @Override
+    public double getLoadMapP99Micros() {
+        return loadMapTimes.percentile(99) / 1e3;
+    }
+
+    @Override
+    public double getCollisionChecksPerTickP50() {
+        return collisionChecks.percentile(50);
+    }
+
+    @Override
+    public double getCollisionChecksPerTickP99() {
+        return collisionChecks.percentile(99);
+    }
+
+    @Override
+    public long getGhostRedirects() {
+        return totalGhostRedirects.get();
+    }
+
+    @Override
+    public double getGhostRedirectsPerTickP99() {
+        return ghostRedirects.percentile(99);
+    }
+
+    @Override
+    public double getEdtQueueDelayP50Millis() {
+        return edtDelays.percentile(50) / 1e6;
+    }
+
+    @Override
+    public double getEdtQueueDelayP99Millis() {
+        return edtDelays.percentile(99) / 1e6;
+    }
+
+    @Override
+    public double getInputLatencyP50Millis() {
+        return inputLatencies.percentile(50) / 1e6;
+    }
+
+    @Override
+    public double getInputLatencyP99Millis() {
+        return inputLatencies.percentile(99) / 1e6;
+    }
+
+    @Override
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    @Override
+    public long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    @Override
+    public long getGcTimeMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    // Megabytes allocated by all threads per second over the last sampled second, 0 until one passed
+    @Override
+    public double getAllocationRateMBPerSecond() {
+        return allocationRate;
+    }
+
+    public long droppedFrames() {
+        return droppedFrames.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "tick p50 %.3f ms p99 %.3f ms | move p50 %.1f us p99 %.1f us | render p50 %.3f ms p99 %.3f ms"
+                        + " | edt wait p99 %.2f ms | dropped %d | collisions/tick p99 %.0f | redirects %d"
+                        + " | gc %d (%d ms) | alloc %.1f MB/s | input p50 %.1f ms p99 %.1f ms",
+                getTickP50Millis(), getTickP99Millis(), getMoveP50Micros(), getMoveP99Micros(),
+                getDrawP50Millis(), getDrawP99Millis(), getEdtQueueDelayP99Millis(), droppedFrames(),
+                getCollisionChecksPerTickP99(), getGhostRedirects(), getGcCount(), getGcTimeMillis(),
+                getAllocationRateMBPerSecond(), getInputLatencyP50Millis(), getInputLatencyP99Millis()
+        );
+    }
+}
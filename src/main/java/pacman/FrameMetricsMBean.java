@@ -0,0 +1,51 @@
+package pacman;
+
+// JMX view of FrameMetrics, registered as pacman:type=FrameMetrics while a GameLoop runs.
+// Durations are percentiles over the most recent samples.
+public interface FrameMetricsMBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getTickCount();
+
+    double getTickP50Millis();
+
+    double getTickP99Millis();
+
+    double getMoveP50Micros();
+
+    double getMoveP99Micros();
+
+    double getDrawP50Millis();
+
+    double getDrawP99Millis();
+
+    long getLoadMapCount();
+
+    double getLoadMapP99Micros();
+
+    double getCollisionChecksPerTickP50();
+
+    double getCollisionChecksPerTickP99();
+
+    long getGhostRedirects();
+
+    double getGhostRedirectsPerTickP99();
+
+    double getEdtQueueDelayP50Millis();
+
+    double getEdtQueueDelayP99Millis();
+
+    double getInputLatencyP50Millis();
+
+    double getInputLatencyP99Millis();
+
+    long getDroppedFrames();
+
+    long getGcCount();
+
+    long getGcTimeMillis();
+
+    double getAllocationRateMBPerSecond();
+}
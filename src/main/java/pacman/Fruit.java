@@ -0,0 +1,19 @@
+package pacman;
+
+// Bonus fruit shown below the ghost house, with the points it is worth
+public enum Fruit {
+    CHERRY(100),
+    STRAWBERRY(300),
+    ORANGE(500),
+    APPLE(700),
+    MELON(1000),
+    GALAXIAN(2000),
+    BELL(3000),
+    KEY(5000);
+
+    final int points;
+
+    Fruit(int points) {
+        this.points = points;
+    }
+}
@@ -0,0 +1,172 @@
+package pacman;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A blocking NetProtocol client that mirrors its room's game into a local GameEngine, which a
+// GameRenderer can draw like any other. Only the mirrored state is meaningful in that engine;
+// it is never stepped locally.
+public class GameClient implements Closeable {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final int room;
+    private final int actor;
+    private final GameEngine engine;
+    private byte[] frame = new byte[256];
+
+    public GameClient(String host, int port, int room, byte role) throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        out.writeInt(NetProtocol.JOIN_LENGTH);
+        out.writeByte(NetProtocol.JOIN);
+        out.writeInt(room);
+        out.writeByte(role);
+        out.flush();
+
+        ByteBuffer welcome = readFrame();
+        if (welcome.get() != NetProtocol.WELCOME) {
+            throw new IOException("Expected a welcome message");
+        }
+        this.room = welcome.getInt();
+        this.actor = welcome.get();
+        byte[] mazeBytes = new byte[welcome.getInt()];
+        welcome.get(mazeBytes);
+        Maze maze = Maze.read(ByteBuffer.wrap(mazeBytes));
+        engine = new GameEngine(maze, 0, GameSettings.DEFAULT, new RandomGhostPolicy());
+        welcome.getInt();
+        engine.readState(welcome);
+    }
+
+    public int room() {
+        return room;
+    }
+
+    // The actor this client steers, or -1 when it only watches
+    public int actor() {
+        return actor;
+    }
+
+    public GameEngine engine() {
+        return engine;
+    }
+
+    // Asks the server to turn this client's actor ('U', 'D', 'L' or 'R'); pacman restarts a finished game
+    public void send(char direction) throws IOException {
+        out.writeInt(NetProtocol.INPUT_LENGTH);
+        out.writeByte(NetProtocol.INPUT);
+        out.writeByte(GameEngine.directionIndex(direction));
+        out.flush();
+    }
+
+    // Blocks for the next message and applies it to the mirrored engine. Returns the message type.
+    public byte receive() throws IOException {
+        ByteBuffer message = readFrame();
+        byte type = message.get();
+        synchronized (engine) {
+            switch (type) {
+                case NetProtocol.FULL_STATE -> {
+                    message.getInt();
+                    engine.readState(message);
+                }
+                case NetProtocol.DELTA -> applyDelta(message);
+                default -> throw new IOException("Unexpected message " + type);
+            }
+        }
+        return type;
+    }
+
+    private void applyDelta(ByteBuffer message) {
+        System.arraycopy(engine.actorX, 0, engine.previousX, 0, engine.actorCount);
+        System.arraycopy(engine.actorY, 0, engine.previousY, 0, engine.actorCount);
+
+        engine.tickCount = message.getLong();
+        engine.score = message.getInt();
+        engine.lives = message.getInt();
+        engine.level = message.getInt();
+        int flags = message.get();
+        engine.isGameOver = (flags & NetProtocol.FLAG_GAME_OVER) != 0;
+        engine.powerPelletActive = (flags & NetProtocol.FLAG_POWER_PELLET) != 0;
+        boolean cherryVisible = (flags & NetProtocol.FLAG_CHERRY) != 0;
+        if (cherryVisible && !engine.cherryVisible) {
+            engine.cherryX = (engine.maze.cherryTile % engine.COLUMN_COUNT) * GameEngine.TILE_UNITS;
+            engine.cherryY = (engine.maze.cherryTile / engine.COLUMN_COUNT) * GameEngine.TILE_UNITS;
+        }
+        engine.cherryVisible = cherryVisible;
+
+        int changed = message.getShort();
+        for (int i = 0; i < changed; i++) {
+            int actor = message.get();
+            engine.actorX[actor] = message.getInt();
+            engine.actorY[actor] = message.getInt();
+            engine.direction[actor] = message.get();
+            engine.ghostMode[actor] = message.get();
+        }
+        int eaten = message.getInt();
+        for (int i = 0; i < eaten; i++) {
+            engine.removeItem(message.getInt());
+        }
+    }
+
+    private ByteBuffer readFrame() throws IOException {
+        int length = in.readInt();
+        if (length <= 0 || length > NetProtocol.MAX_FRAME) {
+            throw new IOException("Bad frame length " + length);
+        }
+        if (frame.length < length) {
+            frame = new byte[Math.max(length, frame.length * 2)];
+        }
+        in.readFully(frame, 0, length);
+        return ByteBuffer.wrap(frame, 0, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    // Arguments: host port rooms seconds. Puts a random-walk pacman bot in each of that many rooms
+    // over loopback and reports the message rate the clients saw.
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : NetProtocol.DEFAULT_PORT;
+        int rooms = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        long seconds = args.length > 3 ? Long.parseLong(args[3]) : 10;
+
+        AtomicLong messages = new AtomicLong();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        try (ExecutorService bots = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int room = 0; room < rooms; room++) {
+                int roomId = room;
+                bots.submit(() -> {
+                    try (GameClient client = new GameClient(host, port, roomId, NetProtocol.ROLE_PACMAN)) {
+                        RandomPacmanPolicy policy = new RandomPacmanPolicy(roomId);
+                        while (System.nanoTime() < deadline) {
+                            client.receive();
+                            messages.incrementAndGet();
+                            char direction = policy.nextDirection(client.engine());
+                            if (direction != ' ' || client.engine().isGameOver) {
+                                client.send(direction == ' ' ? 'R' : direction);
+                            }
+                        }
+                    }
+                    return null;
+                });
+            }
+        }
+        System.out.printf("%d rooms, %d messages in %d s (%.0f per room per second)%n",
+                rooms, messages.get(), seconds, messages.get() / (double) seconds / rooms);
+    }
+}
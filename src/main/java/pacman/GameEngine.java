@@ -0,0 +1,1174 @@
+package pacman;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+// Game state and rules, free of any AWT/Swing dependency so it can be stepped headless.
+// Actors and collectibles live in primitive arrays so a steady-state tick allocates nothing.
+public class GameEngine {
+    // Positions and distances are fixed-point, TILE_UNITS to a tile so tiles are a shift or a mask
+    // away, and the rules never look at pixels: TILE_SIZE (-Dpacman.tileSize) is only how big
+    // renderers draw a tile, see toPixels()
+    static final int TILE_SHIFT = 8;
+    static final int TILE_UNITS = 1 << TILE_SHIFT;
+    static final int TILE_SIZE = Integer.getInteger("pacman.tileSize", 32);
+    // Distance per tick at LevelRules.BASE_SPEED, and the most of it move() hands anyone per round
+    static final int STEP = TILE_UNITS / 4;
+    static final int PACMAN_CORNERING = TILE_UNITS / 8; // How far off a whole tile pacman can still turn
+    final int ROW_COUNT;
+    final int COLUMN_COUNT;
+    final int BOARD_WIDTH; // In pixels
+    final int BOARD_HEIGHT;
+    final int WIDTH; // In position units
+    final int HEIGHT;
+    // Horizontal positions wrap with this period along tunnel rows: x runs from -TILE_UNITS, hidden
+    // just past the left edge, to WIDTH - 1, and the two hidden spots are the same place
+    final int WRAP_WIDTH;
+    private final boolean[] tunnelRow; // Rows whose left and right edges connect, from Maze.tunnelRows
+
+    private final int CHERRY_DURATION = 200;
+    // Alternating scatter/chase phase lengths in ticks from the start of a round, chase forever afterwards
+    private static final int[] PHASE_TICKS = {140, 400, 140, 400, 100, 400, 100};
+    private static final int RELEASE_TICKS = 40; // Between ghosts let out of the same house
+    private static final int HOUSE_SPEED = 50; // Walking in and out of the house, in LevelRules speed units
+    private static final int EYES_SPEED = 200;
+    private static final int PARALLEL_MIN_GHOSTS = 32; // Fewer decide faster on one thread
+    private final int DOTS_FOR_CHERRY;
+    private final int DOTS_FOR_SECOND_CHERRY; // The fruit shows up twice per level, like in the arcade game
+
+    //X = wall, O = skip, P = pac man, ' ' = food, @ = power pellet
+    //Ghosts: b = blue, o = orange, p = pink, r = red
+    static final String[] DEFAULT_TILE_MAP = {
+            "XXXXXXXXXXXXXXXXXXX",
+            "X@       X       @X",
+            "X XX XXX X XXX XX X",
+            "X                 X",
+            "X XX X XXXXX X XX X",
+            "X    X       X    X",
+            "XXXX XXXX XXXX XXXX",
+            "OOOX X       X XOOO",
+            "XXXX X XXrXX X XXXX",
+            "O       bpo       O",
+            "XXXX X XXXXX X XXXX",
+            "OOOX X       X XOOO",
+            "XXXX X XXXXX X XXXX",
+            "X        X        X",
+            "X XX XXX X XXX XX X",
+            "X  X     P     X  X",
+            "XX X X XXXXX X X XX",
+            "X    X   X   X    X",
+            "X XXXXXX X XXXXXX X",
+            "X@               @X",
+            "XXXXXXXXXXXXXXXXXXX"
+    };
+    final Maze maze;
+
+    // Tile grid copied from the maze by loadMap(), indexed by row * COLUMN_COUNT + column
+    private final byte WALL_TILE = 1;
+    byte[] tiles;
+    long[] foodBits; // One bit per tile still holding food
+    long[] pelletBits; // One bit per tile still holding a power pellet
+    int foodCount = 0;
+    int pelletCount = 0;
+
+    // Food and pellets are drawn and collided as small squares inside their tile, in position units
+    static final int ITEM_OFFSET = TILE_UNITS * 7 / 16;
+    static final int FOOD_SIZE = TILE_UNITS / 8;
+    static final int PELLET_SIZE = TILE_UNITS * 3 / 8;
+
+    // Lets renderers keep cached copies of the board in sync without rescanning it
+    int mapVersion = 0; // Bumped by every loadMap()
+    int[] eatenTiles; // Tiles whose food or power pellet was eaten since the last loadMap(), in order
+    int eatenTileCount = 0;
+
+    // Actors: index 0 is pacman, the ghosts follow in tile map order
+    static final int PACMAN = 0;
+    static final byte NO_DIRECTION = -1;
+    int actorCount;
+    char[] actorKind; // Tile map character the actor was loaded from, shared with the maze
+    int[] actorX;
+    int[] actorY;
+    int[] startX;
+    int[] startY;
+    int[] previousX; // Position before the current tick, for interpolated drawing
+    int[] previousY;
+    int[] velocityX; // -1, 0 or 1 along each axis; both 0 while the actor stands still
+    int[] velocityY;
+    byte[] direction; // Index into ghostDirections
+    byte[] queuedDirection; // Requested turn not taken yet, or NO_DIRECTION
+    int[] cornering; // How far off a whole tile the actor can still turn onto the other axis, see tryTurn()
+    int[] speedCredit; // Distance owed to the actor in 1/BASE_SPEED units, see distance()
+    private int[] tickDistance; // Distance each actor covers in the current move()
+    private int[] movedDistance; // Of which used up so far, see allowance()
+
+    // Ghost modes. A ghost waits IN_HOUSE until its release tick, walks out through its house door
+    // (LEAVING), then roams in SCATTER or CHASE as the phase schedule says. A power pellet turns
+    // roaming ghosts FRIGHTENED; an eaten one travels back to a door as EYES and walks in
+    // (ENTERING), to wait in the house again. Walks in and out of the house ignore walls.
+    static final byte IN_HOUSE = 0;
+    static final byte LEAVING = 1;
+    static final byte SCATTER = 2;
+    static final byte CHASE = 3;
+    static final byte FRIGHTENED = 4;
+    static final byte EYES = 5;
+    static final byte ENTERING = 6;
+    byte[] ghostMode;
+    long[] releaseTick; // When an IN_HOUSE ghost starts LEAVING
+    int[] houseDoor; // Tile of the door the ghost last came home through, see Maze.houseDoors
+    int ghostChain = 0; // Ghosts eaten on the current power pellet, for LevelRules.GHOST_POINTS
+
+    // Timed events are deadlines in ticks rather than counters, and move() only looks at them
+    // once the earliest is due, see runSchedule()
+    boolean powerPelletActive = false;
+    private long frightenedUntil = 0;
+    private long nextScheduledTick = 0;
+
+    boolean cherryVisible = false;
+    int cherryX;
+    int cherryY;
+    private long cherryUntil = 0;
+    private int eatenDotsCount = 0;
+
+    // Each round's ghost decisions are made before any ghost moves, each with a random seeded
+    // from the tick, the ghost and the round, so they come out the same on any number of threads.
+    // With many ghosts they can be spread over GhostDecisionPool: -Dpacman.parallelGhosts=true
+    boolean parallelGhosts = Boolean.getBoolean("pacman.parallelGhosts");
+    private byte[] decision; // Per ghost for the current round, see decide()
+    private GameRandom[] decisionRandom = {new GameRandom(0)}; // One per deciding thread
+    private long tickSeed;
+    private static final int REDIRECTED = 4; // Added to a decision made after running into a wall
+    private static final byte BOXED_IN = 8;
+
+    static final char[] ghostDirections = {'U', 'D', 'L', 'R'}; // Up Down Left Right
+    static final int[] directionDeltaX = {0, 0, -1, 1};
+    static final int[] directionDeltaY = {-1, 1, 0, 0};
+    final GameSettings settings;
+    final GhostPolicy ghostPolicy;
+    long seed; // Seed of the current game, enough to replay it together with the inputs
+    GameRandom random;
+    int score = 0;
+    int lives = 3;
+    int level = 1;
+    long tickCount = 0;
+    long roundStartTick = 0; // Tick of the last resetPosition(), the scatter/chase phases count from it
+    boolean isGameOver = false;
+
+    // Running diagnostics totals for FrameMetrics, not part of the game state
+    long collisionChecks = 0; // Overlap and wall tests; approximate while ghosts decide in parallel
+    long ghostRedirects = 0; // Ghosts that hit a wall and asked the policy for a new direction
+    long loadMapCount = 0;
+    long lastLoadMapNanos = 0;
+
+    GameEventBus events; // Null unless something listens; not part of the game state
+
+    GameEngine() {
+        this(new Random().nextLong());
+    }
+
+    GameEngine(long seed) {
+        this(seed, GameSettings.DEFAULT, new ChaseScatterGhostPolicy());
+    }
+
+    GameEngine(long seed, GameSettings settings, GhostPolicy ghostPolicy) {
+        this(Maze.CLASSIC, seed, settings, ghostPolicy);
+    }
+
+    GameEngine(String[] tileMap, long seed, GameSettings settings, GhostPolicy ghostPolicy) {
+        this(new Maze("custom", tileMap), seed, settings, ghostPolicy);
+    }
+
+    GameEngine(Maze maze, long seed, GameSettings settings, GhostPolicy ghostPolicy) {
+        this.maze = maze;
+        this.ROW_COUNT = maze.rows;
+        this.COLUMN_COUNT = maze.columns;
+        this.BOARD_WIDTH = COLUMN_COUNT * TILE_SIZE;
+        this.BOARD_HEIGHT = ROW_COUNT * TILE_SIZE;
+        this.WIDTH = COLUMN_COUNT * TILE_UNITS;
+        this.HEIGHT = ROW_COUNT * TILE_UNITS;
+        this.WRAP_WIDTH = WIDTH + TILE_UNITS;
+        this.tunnelRow = new boolean[ROW_COUNT];
+        for (int row : maze.tunnelRows) {
+            tunnelRow[row] = true;
+        }
+        this.seed = seed;
+        this.random = new GameRandom(seed);
+        this.settings = settings;
+        this.DOTS_FOR_CHERRY = settings.dotsForCherry();
+        this.DOTS_FOR_SECOND_CHERRY = settings.dotsForCherry() + 100;
+        this.ghostPolicy = ghostPolicy;
+
+        int tileCount = ROW_COUNT * COLUMN_COUNT;
+        tiles = new byte[tileCount];
+        foodBits = new long[(tileCount + 63) >> 6];
+        pelletBits = new long[(tileCount + 63) >> 6];
+        eatenTiles = new int[tileCount];
+        allocateActors();
+        restart();
+    }
+
+    private void allocateActors() {
+        actorCount = maze.actorCount();
+        actorKind = maze.actorKinds;
+        actorX = new int[actorCount];
+        actorY = new int[actorCount];
+        startX = new int[actorCount];
+        startY = new int[actorCount];
+        previousX = new int[actorCount];
+        previousY = new int[actorCount];
+        velocityX = new int[actorCount];
+        velocityY = new int[actorCount];
+        direction = new byte[actorCount];
+        queuedDirection = new byte[actorCount];
+        cornering = new int[actorCount];
+        cornering[PACMAN] = PACMAN_CORNERING; // Ghosts only turn on whole tiles
+        speedCredit = new int[actorCount];
+        tickDistance = new int[actorCount];
+        movedDistance = new int[actorCount];
+        ghostMode = new byte[actorCount];
+        releaseTick = new long[actorCount];
+        houseDoor = new int[actorCount];
+        decision = new byte[actorCount];
+    }
+
+    // Advances the game by one tick, applying the requested pacman direction (' ' for none) first
+    public void step(char input) {
+        if (isGameOver) {
+            return;
+        }
+        if (input != ' ') {
+            setDirection(PACMAN, directionIndex(input));
+        }
+        System.arraycopy(actorX, 0, previousX, 0, actorCount);
+        System.arraycopy(actorY, 0, previousY, 0, actorCount);
+        move();
+        tickCount++;
+    }
+
+    // Starts a new game with a fresh seed; the game then plays out exactly like a new engine with that seed
+    public void restart(long seed) {
+        this.seed = seed;
+        random.setSeed(seed);
+        restart();
+    }
+
+    public void restart() {
+        lives = 3;
+        score = 0;
+        level = 1;
+        tickCount = 0;
+        isGameOver = false;
+        startLevel();
+    }
+
+    // Sets up the current level in place: refills the board and puts everyone back at the start
+    private void startLevel() {
+        loadMap();
+        resetPosition();
+        cherryVisible = false;
+        eatenDotsCount = 0;
+        ghostChain = 0;
+    }
+
+    // The rules of the level being played
+    public LevelRules levelRules() {
+        return LevelRules.forLevel(level);
+    }
+
+    // The bonus fruit of the level being played, shown while cherryVisible
+    public Fruit fruit() {
+        return levelRules().fruit();
+    }
+
+    private void spawnCherry() {
+        // Cherry appears at the maze's cherry tile, below the ghost house in the classic maze
+        cherryX = (maze.cherryTile % COLUMN_COUNT) * TILE_UNITS;
+        cherryY = (maze.cherryTile / COLUMN_COUNT) * TILE_UNITS;
+        cherryVisible = true;
+        cherryUntil = tickCount + CHERRY_DURATION;
+        nextScheduledTick = Math.min(nextScheduledTick, cherryUntil);
+        if (events != null) {
+            events.publish(GameEventBus.CHERRY_SPAWNED, tickCount, maze.cherryTile, fruit().ordinal());
+        }
+    }
+
+    // Refills the board in place from the parsed maze; nothing is parsed or reallocated between levels
+    public void loadMap() {
+        long start = System.nanoTime();
+        System.arraycopy(maze.walls, 0, tiles, 0, tiles.length);
+        System.arraycopy(maze.foodBits, 0, foodBits, 0, foodBits.length);
+        System.arraycopy(maze.pelletBits, 0, pelletBits, 0, pelletBits.length);
+        foodCount = maze.foodCount;
+        pelletCount = maze.pelletCount;
+        eatenTileCount = 0;
+        mapVersion++;
+
+        for (int actor = 0; actor < actorCount; actor++) {
+            int tile = maze.actorTiles[actor];
+            placeActor(actor, (tile % COLUMN_COUNT) * TILE_UNITS, (tile / COLUMN_COUNT) * TILE_UNITS);
+        }
+        loadMapCount++;
+        lastLoadMapNanos = System.nanoTime() - start;
+    }
+
+    private void placeActor(int actor, int x, int y) {
+        actorX[actor] = x;
+        actorY[actor] = y;
+        startX[actor] = x;
+        startY[actor] = y;
+        previousX[actor] = x;
+        previousY[actor] = y;
+        velocityX[actor] = 0;
+        velocityY[actor] = 0;
+        direction[actor] = (byte) (actor == PACMAN ? 3 : 0);
+        queuedDirection[actor] = NO_DIRECTION;
+        speedCredit[actor] = 0;
+    }
+
+    public void setDirection(int actor, int newDirection) {
+        // Store the requested direction
+        queuedDirection[actor] = (byte) newDirection;
+
+        // Try to turn immediately if possible
+        tryTurn(actor);
+    }
+
+    public void tryTurn(int actor) {
+        // If no queued direction, nothing to do
+        int queued = queuedDirection[actor];
+        if (queued == NO_DIRECTION) {
+            return;
+        }
+
+        // Moving along the queued axis the actor is already lined up. Turning onto the other axis it
+        // has to be within its cornering distance of the whole tile, and is pulled onto its line.
+        int x = actorX[actor];
+        int y = actorY[actor];
+        if (directionDeltaX[queued] == 0) {
+            x = nearestWholeTile(x);
+        } else {
+            y = nearestWholeTile(y);
+        }
+        boolean inReach = Math.abs(x - actorX[actor]) + Math.abs(y - actorY[actor]) <= cornering[actor];
+
+        // Turn only if moving on in the queued direction would not cause a collision
+        if (inReach && canOccupy(x + directionDeltaX[queued], y + directionDeltaY[queued])) {
+            actorX[actor] = x;
+            actorY[actor] = y;
+            direction[actor] = (byte) queued;
+            queuedDirection[actor] = NO_DIRECTION;
+        }
+        setVelocity(actor);
+    }
+
+    private static int nearestWholeTile(int position) {
+        return (position + TILE_UNITS / 2) & -TILE_UNITS;
+    }
+
+    public void setVelocity(int actor) {
+        velocityX[actor] = directionDeltaX[direction[actor]];
+        velocityY[actor] = directionDeltaY[direction[actor]];
+    }
+
+    void reset(int actor) {
+        actorX[actor] = startX[actor];
+        actorY[actor] = startY[actor];
+        queuedDirection[actor] = NO_DIRECTION;
+        speedCredit[actor] = 0;
+        if (actor == PACMAN) {
+            direction[actor] = 3; // Right
+        }
+    }
+
+    // Distance in units an actor covers this tick at a LevelRules speed, STEP at BASE_SPEED. The
+    // fraction left over carries to the next tick, so at 94 an actor moves 60 units on most ticks
+    // and 61 on about one in six and comes out at exactly 94% of the base speed.
+    private int distance(int actor, int speed) {
+        int credit = speedCredit[actor] + speed * STEP;
+        speedCredit[actor] = credit % LevelRules.BASE_SPEED;
+        return credit / LevelRules.BASE_SPEED;
+    }
+
+    // Every actor's distance is spread over rounds, with pacman checked against the ghosts after
+    // each round. A round moves an actor at most STEP, plus at most another STEP it kept back, half a
+    // tile in all and less than it takes two of them to pass through each other, so no catch is
+    // missed however fast they go or however long a tick is.
+    public void move() {
+        if (tickCount >= nextScheduledTick) {
+            runSchedule();
+        }
+        tickSeed = random.nextLong();
+
+        LevelRules rules = levelRules();
+        int kept = speedCredit[PACMAN] / LevelRules.BASE_SPEED;
+        tickDistance[PACMAN] =
+                distance(PACMAN, powerPelletActive ? rules.pacmanFrightenedSpeed() : rules.pacmanSpeed());
+        movedDistance[PACMAN] = 0;
+        int farthest = tickDistance[PACMAN] - kept;
+        for (int ghost = 1; ghost < actorCount; ghost++) {
+            kept = speedCredit[ghost] / LevelRules.BASE_SPEED;
+            tickDistance[ghost] = distance(ghost, ghostSpeed(ghost, rules));
+            movedDistance[ghost] = 0;
+            farthest = Math.max(farthest, tickDistance[ghost] - kept);
+        }
+
+        // Rounds by speed alone; a tick where nobody moves still checks for catches once
+        int rounds = Math.max((farthest + STEP - 1) / STEP, 1);
+        for (int round = 0; round < rounds; round++) {
+            int allowance = allowance(PACMAN, round, rounds);
+            if (allowance > 0) {
+                stepPacman(allowance);
+                movedDistance[PACMAN] += allowance;
+                eatPellets(rules);
+                eatFood();
+                eatFruit(rules);
+                if (foodCount == 0) {
+                    break;
+                }
+            }
+            if (!parallelGhosts || actorCount - 1 < PARALLEL_MIN_GHOSTS || !ghostPolicy.parallelSafe()
+                    || !decideInParallel(round, rounds)) {
+                decideGhosts(1, actorCount, round, rounds, 0);
+            }
+            for (int ghost = 1; ghost < actorCount; ghost++) {
+                allowance = allowance(ghost, round, rounds);
+                if (allowance > 0) {
+                    movedDistance[ghost] += stepGhost(ghost, allowance);
+                }
+            }
+            if (!resolveCatches()) {
+                return; // Everyone went back to the start, or the game is over
+            }
+        }
+
+        // Ghosts that stopped on a whole tile at the end of the tick catch up on the next one
+        for (int actor = 0; actor < actorCount; actor++) {
+            speedCredit[actor] += (tickDistance[actor] - movedDistance[actor]) * LevelRules.BASE_SPEED;
+        }
+
+        if (foodCount == 0) {
+            if (events != null) {
+                events.publish(GameEventBus.LEVEL_CLEARED, tickCount, 0, level);
+            }
+            level++;
+            startLevel();
+        }
+    }
+
+    // Everything due by now: the fruit timing out, frightened time ending, scatter/chase switches and
+    // ghosts let out of the house. Then finds the next deadline, so ticks in between skip all this.
+    private void runSchedule() {
+        if (cherryVisible && tickCount >= cherryUntil) {
+            cherryVisible = false;
+        }
+        if (powerPelletActive && tickCount >= frightenedUntil) {
+            powerPelletActive = false;
+        }
+        byte phase = phaseMode();
+        for (int ghost = 1; ghost < actorCount; ghost++) {
+            byte mode = ghostMode[ghost];
+            if (mode == IN_HOUSE && tickCount >= releaseTick[ghost]) {
+                ghostMode[ghost] = LEAVING;
+            } else if (mode == FRIGHTENED && !powerPelletActive) {
+                ghostMode[ghost] = phase;
+            } else if ((mode == SCATTER || mode == CHASE) && mode != phase) {
+                // Roaming ghosts turn around when the phase changes
+                ghostMode[ghost] = phase;
+                setDirection(ghost, reverseIndex(direction[ghost]));
+            }
+        }
+        scheduleNext(tickCount + 1);
+    }
+
+    // Sets nextScheduledTick to the first deadline from tick on
+    private void scheduleNext(long tick) {
+        long next = Long.MAX_VALUE;
+        if (cherryVisible) {
+            next = Math.min(next, cherryUntil);
+        }
+        if (powerPelletActive) {
+            next = Math.min(next, frightenedUntil);
+        }
+        long phaseEnd = roundStartTick;
+        for (int ticks : PHASE_TICKS) {
+            phaseEnd += ticks;
+            if (phaseEnd >= tick) {
+                next = Math.min(next, phaseEnd);
+                break;
+            }
+        }
+        for (int ghost = 1; ghost < actorCount; ghost++) {
+            if (ghostMode[ghost] == IN_HOUSE) {
+                next = Math.min(next, releaseTick[ghost]);
+            }
+        }
+        nextScheduledTick = Math.max(next, tick);
+    }
+
+    // SCATTER or CHASE, whichever roaming ghosts should be in now
+    private byte phaseMode() {
+        long ticks = tickCount - roundStartTick;
+        for (int i = 0; i < PHASE_TICKS.length; i++) {
+            if (ticks < PHASE_TICKS[i]) {
+                return i % 2 == 0 ? SCATTER : CHASE;
+            }
+            ticks -= PHASE_TICKS[i];
+        }
+        return CHASE;
+    }
+
+    private int ghostSpeed(int ghost, LevelRules rules) {
+        return switch (ghostMode[ghost]) {
+            case IN_HOUSE -> 0;
+            case LEAVING, ENTERING -> HOUSE_SPEED;
+            case FRIGHTENED -> rules.ghostFrightenedSpeed();
+            case EYES -> EYES_SPEED;
+            default -> rules.ghostSpeed();
+        };
+    }
+
+    // How far an actor may move in this round: its share of the tick's distance, spread evenly over
+    // the rounds, plus what it kept back in earlier rounds by stopping on a whole tile to decide
+    private int allowance(int actor, int round, int rounds) {
+        return (round + 1) * tickDistance[actor] / rounds - movedDistance[actor];
+    }
+
+    private void eatPellets(LevelRules rules) {
+        int pelletsEaten = eatItems(pelletBits, PELLET_SIZE);
+        if (pelletsEaten == 0) {
+            return;
+        }
+        pelletCount -= pelletsEaten;
+        int frightenedTicks = rules.frightenedTicks(settings);
+        if (frightenedTicks > 0) {
+            powerPelletActive = true;
+            frightenedUntil = tickCount + frightenedTicks;
+            nextScheduledTick = Math.min(nextScheduledTick, frightenedUntil);
+            ghostChain = 0;
+            // Roaming ghosts turn around and run; ghosts in the house or on their way home are left alone
+            for (int ghost = 1; ghost < actorCount; ghost++) {
+                if (ghostMode[ghost] == SCATTER || ghostMode[ghost] == CHASE) {
+                    ghostMode[ghost] = FRIGHTENED;
+                    setDirection(ghost, reverseIndex(direction[ghost]));
+                }
+            }
+        }
+        score += 50 * pelletsEaten; // Score for eating a power pellet
+        if (events != null) {
+            for (int i = eatenTileCount - pelletsEaten; i < eatenTileCount; i++) {
+                events.publish(GameEventBus.PELLET_EATEN, tickCount, eatenTiles[i], 50);
+            }
+        }
+    }
+
+    private void eatFood() {
+        int foodEaten = eatItems(foodBits, FOOD_SIZE);
+        for (int i = 0; i < foodEaten; i++) {
+            foodCount--;
+            score += 10;
+            eatenDotsCount++;
+            if (events != null) {
+                events.publish(GameEventBus.DOT_EATEN, tickCount, eatenTiles[eatenTileCount - foodEaten + i], 10);
+            }
+
+            if (eatenDotsCount == DOTS_FOR_CHERRY || eatenDotsCount == DOTS_FOR_SECOND_CHERRY) {
+                spawnCherry();
+            }
+        }
+    }
+
+    private void eatFruit(LevelRules rules) {
+        if (cherryVisible && collides(actorX[PACMAN], actorY[PACMAN], TILE_UNITS, cherryX, cherryY, TILE_UNITS)) {
+            score += rules.fruit().points;
+            cherryVisible = false;
+            if (events != null) {
+                events.publish(GameEventBus.CHERRY_EATEN, tickCount, rules.fruit().ordinal(), rules.fruit().points);
+            }
+        }
+    }
+
+    // Pacman against every ghost where they stand now: a frightened ghost gets eaten, eyes pass
+    // through and any other catches pacman. False when pacman was caught and everyone went back
+    // to the start.
+    private boolean resolveCatches() {
+        for (int ghost = 1; ghost < actorCount; ghost++) {
+            byte mode = ghostMode[ghost];
+            if (mode == EYES || mode == ENTERING || !actorsCollide(ghost, PACMAN)) {
+                continue;
+            }
+            if (mode == FRIGHTENED) {
+                // Ghost gets eaten, each one on the same power pellet worth double the last
+                ghostMode[ghost] = EYES;
+                int points = LevelRules.GHOST_POINTS[Math.min(ghostChain, LevelRules.GHOST_POINTS.length - 1)];
+                score += points;
+                ghostChain++;
+                if (events != null) {
+                    events.publish(GameEventBus.GHOST_EATEN, tickCount, ghost, points);
+                }
+            } else {
+                // Pac Man gets eaten
+                lives -= 1;
+                if (events != null) {
+                    events.publish(GameEventBus.PACMAN_DIED, tickCount, ghost, lives);
+                }
+                if (lives == 0) {
+                    isGameOver = true;
+                } else {
+                    resetPosition();
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Moves pacman up to distance, taking a queued turn on any whole tile it passes. Whatever a wall
+    // stops it short of is lost.
+    private void stepPacman(int distance) {
+        tryTurn(PACMAN);
+        while (distance > 0) {
+            int moved = advance(PACMAN, distance);
+            if (moved == 0) {
+                return;
+            }
+            distance -= moved;
+            tryTurn(PACMAN);
+        }
+    }
+
+    private boolean decideInParallel(int round, int rounds) {
+        GhostDecisionPool pool = GhostDecisionPool.shared();
+        if (pool.participants() == 1) {
+            return false;
+        }
+        if (decisionRandom.length < pool.participants()) {
+            decisionRandom = new GameRandom[pool.participants()];
+            for (int i = 0; i < decisionRandom.length; i++) {
+                decisionRandom[i] = new GameRandom(0);
+            }
+        }
+        return pool.decide(this, round, rounds);
+    }
+
+    // Fills in this round's decisions for ghosts from up to to. Only reads the game, so ranges can
+    // be decided on different threads; participant picks the thread's random.
+    void decideGhosts(int from, int to, int round, int rounds, int participant) {
+        for (int ghost = from; ghost < to; ghost++) {
+            byte mode = ghostMode[ghost];
+            boolean roaming = mode == SCATTER || mode == CHASE || mode == FRIGHTENED;
+            decision[ghost] = roaming && allowance(ghost, round, rounds) > 0
+                    ? decide(ghost, round, decisionRandom[participant])
+                    : NO_DIRECTION;
+        }
+    }
+
+    // Asks the ghost policy where to go at intersections and walls: NO_DIRECTION to keep going, a
+    // direction, a direction plus REDIRECTED after a wall, or BOXED_IN
+    private byte decide(int ghost, int round, GameRandom random) {
+        // Between tiles a ghost is heading into a tile it already overlaps, so nothing can be in the way
+        int x = actorX[ghost];
+        int y = actorY[ghost];
+        if (x % TILE_UNITS != 0 || y % TILE_UNITS != 0) {
+            return NO_DIRECTION;
+        }
+        int current = direction[ghost];
+        boolean blocked = !canOccupy(x + directionDeltaX[current], y + directionDeltaY[current]);
+        if (!blocked && !isIntersection(ghost)) {
+            return NO_DIRECTION;
+        }
+        random.setSeed(mix(tickSeed + ghost * 0x9E3779B97F4A7C15L + round));
+        int open = openDirections(ghost);
+        if (!blocked) {
+            return (byte) ghostPolicy.atIntersection(this, ghost, open, random);
+        }
+        int newDirection = ghostPolicy.afterCollision(this, ghost, open, random);
+        return newDirection == NO_DIRECTION ? BOXED_IN : (byte) (newDirection + REDIRECTED);
+    }
+
+    // Stafford's variant 13 of the SplitMix64 finalizer: nearby inputs give unrelated seeds
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Moves a ghost up to distance in whatever way its mode moves it and returns the distance used
+    // up. A roaming ghost stops on whole tiles, keeping the rest for after its next decision.
+    private int stepGhost(int ghost, int distance) {
+        switch (ghostMode[ghost]) {
+            case LEAVING, ENTERING -> {
+                return stepInHouse(ghost, distance);
+            }
+            case EYES -> {
+                return stepEyes(ghost, distance);
+            }
+            case SCATTER, CHASE, FRIGHTENED -> {
+                int newDirection = decision[ghost];
+                if (newDirection >= REDIRECTED) {
+                    ghostRedirects++;
+                    if (newDirection == BOXED_IN) {
+                        return distance;
+                    }
+                    newDirection -= REDIRECTED;
+                }
+                if (newDirection != NO_DIRECTION) {
+                    setDirection(ghost, newDirection);
+                }
+                int moved = advance(ghost, distance);
+                return moved == 0 ? distance : moved;
+            }
+            default -> {
+                return distance;
+            }
+        }
+    }
+
+    // Eyes take the shortest way to the nearest house door, turning only on whole tiles
+    private int stepEyes(int ghost, int distance) {
+        int left = distance;
+        while (left > 0) {
+            int x = actorX[ghost];
+            int y = actorY[ghost];
+            if (x % TILE_UNITS == 0 && y % TILE_UNITS == 0 && x >= 0 && x < WIDTH) {
+                int[] distances = maze.doorDistances();
+                int row = y / TILE_UNITS;
+                int column = x / TILE_UNITS;
+                if (distances[tileIndex(row, column)] == 0) {
+                    houseDoor[ghost] = tileIndex(row, column);
+                    ghostMode[ghost] = ENTERING;
+                    return distance - left + stepInHouse(ghost, left);
+                }
+                int open = openDirections(ghost);
+                int best = NO_DIRECTION;
+                int bestDistance = Integer.MAX_VALUE;
+                for (int i = 0; i < 4; i++) {
+                    if ((open & (1 << i)) == 0) {
+                        continue;
+                    }
+                    int r = row + directionDeltaY[i];
+                    int c = Math.floorMod(column + directionDeltaX[i], COLUMN_COUNT);
+                    int doorDistance = distances[tileIndex(r, c)];
+                    if (doorDistance >= 0 && doorDistance < bestDistance) {
+                        bestDistance = doorDistance;
+                        best = i;
+                    }
+                }
+                if (best == NO_DIRECTION) {
+                    return distance;
+                }
+                direction[ghost] = (byte) best;
+                queuedDirection[ghost] = NO_DIRECTION;
+                setVelocity(ghost);
+            }
+            int moved = advance(ghost, left);
+            if (moved == 0) {
+                return distance;
+            }
+            left -= moved;
+        }
+        return distance;
+    }
+
+    // Walks a LEAVING ghost across to its door's column and then up through it, or an ENTERING one
+    // down from the door and then across to its own spot, which sits where its start does relative
+    // to its start door. Arriving switches to the phase's mode, keeping the distance left for the
+    // ghost's first decision, or back to waiting IN_HOUSE.
+    private int stepInHouse(int ghost, int distance) {
+        int doorX = (houseDoor[ghost] % COLUMN_COUNT) * TILE_UNITS;
+        int doorY = (houseDoor[ghost] / COLUMN_COUNT) * TILE_UNITS;
+        int homeDoor = maze.houseDoors[ghost];
+        int spotX = doorX + startX[ghost] - (homeDoor % COLUMN_COUNT) * TILE_UNITS;
+        int spotY = doorY + startY[ghost] - (homeDoor / COLUMN_COUNT) * TILE_UNITS;
+        boolean leaving = ghostMode[ghost] == LEAVING;
+        int targetX = leaving ? doorX : spotX;
+        int targetY = leaving ? doorY : spotY;
+
+        int left = distance;
+        while (left > 0) {
+            int x = actorX[ghost];
+            int y = actorY[ghost];
+            int newDirection;
+            int gap;
+            if (x == targetX && y == targetY) {
+                if (leaving) {
+                    ghostMode[ghost] = phaseMode();
+                    setDirection(ghost, direction[ghost]);
+                    return distance - left;
+                }
+                ghostMode[ghost] = IN_HOUSE;
+                releaseTick[ghost] = tickCount + 1;
+                nextScheduledTick = Math.min(nextScheduledTick, releaseTick[ghost]);
+                return distance;
+            } else if (leaving ? x != targetX : y == targetY) {
+                newDirection = x < targetX ? 3 : 2;
+                gap = Math.abs(targetX - x);
+            } else {
+                newDirection = y < targetY ? 1 : 0;
+                gap = Math.abs(targetY - y);
+            }
+            direction[ghost] = (byte) newDirection;
+            queuedDirection[ghost] = NO_DIRECTION;
+            setVelocity(ghost);
+            int moved = Math.min(left, gap);
+            actorX[ghost] = x + velocityX[ghost] * moved;
+            actorY[ghost] = y + velocityY[ghost] * moved;
+            left -= moved;
+        }
+        return distance;
+    }
+
+    // Overlap test for two squares of the given sizes
+    public boolean collides(int ax, int ay, int aSize, int bx, int by, int bSize) {
+        collisionChecks++;
+        return ax < bx + bSize
+                && ax + aSize > bx
+                && ay < by + bSize
+                && ay + aSize > by;
+    }
+
+    // Moves an actor up to distance along its velocity, but no further than the next whole tile so
+    // it can turn there, wrapping through tunnels. Returns how far it went, 0 if the way is blocked;
+    // the move is checked before it is made, so a blocked actor never leaves its square.
+    private int advance(int actor, int distance) {
+        int dx = velocityX[actor];
+        int dy = velocityY[actor];
+        if (dx == 0 && dy == 0) {
+            return 0;
+        }
+        int offset = (dx != 0 ? actorX[actor] : actorY[actor]) & (TILE_UNITS - 1);
+        int toWholeTile = offset == 0 ? TILE_UNITS : dx + dy > 0 ? TILE_UNITS - offset : offset;
+        distance = Math.min(distance, toWholeTile);
+        int x = actorX[actor] + dx * distance;
+        int y = actorY[actor] + dy * distance;
+        if (!canOccupy(x, y)) {
+            return 0;
+        }
+        if (x < -TILE_UNITS) {
+            x += WRAP_WIDTH;
+        } else if (x >= WIDTH) {
+            x -= WRAP_WIDTH;
+        }
+        actorX[actor] = x;
+        actorY[actor] = y;
+        return distance;
+    }
+
+    // Whether an actor-sized square at x, y is clear of walls and, where it sticks out past the left
+    // or right edge, lies exactly along a tunnel row. Nothing leaves the board vertically.
+    public boolean canOccupy(int x, int y) {
+        if (y < 0 || y + TILE_UNITS > HEIGHT) {
+            return false;
+        }
+        if ((x < 0 || x + TILE_UNITS > WIDTH) && (y % TILE_UNITS != 0 || !tunnelRow[y / TILE_UNITS])) {
+            return false;
+        }
+        return !collidesWithWall(x, y, TILE_UNITS, TILE_UNITS);
+    }
+
+    // Overlap of two actors, measured the short way round through a tunnel
+    public boolean actorsCollide(int a, int b) {
+        collisionChecks++;
+        int dx = Math.abs(actorX[a] - actorX[b]);
+        dx = Math.min(dx, WRAP_WIDTH - dx);
+        return dx < TILE_UNITS && Math.abs(actorY[a] - actorY[b]) < TILE_UNITS;
+    }
+
+    // A position or size in units as drawn, in pixels
+    static int toPixels(int units) {
+        return (units * TILE_SIZE) >> TILE_SHIFT;
+    }
+
+    private int tileIndex(int row, int column) {
+        return row * COLUMN_COUNT + column;
+    }
+
+    public boolean hasFood(int tile) {
+        return (foodBits[tile >> 6] & (1L << tile)) != 0;
+    }
+
+    public boolean hasPellet(int tile) {
+        return (pelletBits[tile >> 6] & (1L << tile)) != 0;
+    }
+
+    public boolean collidesWithWall(int actor) {
+        return collidesWithWall(actorX[actor], actorY[actor], TILE_UNITS, TILE_UNITS);
+    }
+
+    // Only the tiles overlapped by the rectangle can hold a wall it collides with
+    public boolean collidesWithWall(int x, int y, int width, int height) {
+        collisionChecks++;
+        int firstRow = Math.max(y >> TILE_SHIFT, 0);
+        int lastRow = Math.min((y + height - 1) >> TILE_SHIFT, ROW_COUNT - 1);
+        int firstColumn = Math.max(x >> TILE_SHIFT, 0);
+        int lastColumn = Math.min((x + width - 1) >> TILE_SHIFT, COLUMN_COUNT - 1);
+
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                if (tiles[tileIndex(r, c)] == WALL_TILE) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Clears every item of the given bitset pacman touches this tick and returns how many there were
+    private int eatItems(long[] bits, int itemSize) {
+        int x = actorX[PACMAN];
+        int y = actorY[PACMAN];
+        int firstRow = Math.max(y >> TILE_SHIFT, 0);
+        int lastRow = Math.min((y + TILE_UNITS - 1) >> TILE_SHIFT, ROW_COUNT - 1);
+        int firstColumn = Math.max(x >> TILE_SHIFT, 0);
+        int lastColumn = Math.min((x + TILE_UNITS - 1) >> TILE_SHIFT, COLUMN_COUNT - 1);
+
+        int eaten = 0;
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                int index = tileIndex(r, c);
+                long mask = 1L << index;
+                int itemX = c * TILE_UNITS + ITEM_OFFSET;
+                int itemY = r * TILE_UNITS + ITEM_OFFSET;
+                if ((bits[index >> 6] & mask) != 0 && collides(x, y, TILE_UNITS, itemX, itemY, itemSize)) {
+                    bits[index >> 6] &= ~mask;
+                    eatenTiles[eatenTileCount++] = index;
+                    eaten++;
+                }
+            }
+        }
+        return eaten;
+    }
+
+    // Clears the food or power pellet on a tile as if it had been eaten, for engines mirroring a remote game
+    void removeItem(int tile) {
+        long mask = 1L << tile;
+        if ((foodBits[tile >> 6] & mask) != 0) {
+            foodBits[tile >> 6] &= ~mask;
+            foodCount--;
+        } else if ((pelletBits[tile >> 6] & mask) != 0) {
+            pelletBits[tile >> 6] &= ~mask;
+            pelletCount--;
+        } else {
+            return;
+        }
+        eatenTiles[eatenTileCount++] = tile;
+    }
+
+    public void resetPosition() {
+        reset(PACMAN);
+        velocityX[PACMAN] = 0;
+        velocityY[PACMAN] = 0;
+        powerPelletActive = false;
+        roundStartTick = tickCount;
+        for (int ghost = 1; ghost < actorCount; ghost++) {
+            reset(ghost);
+            direction[ghost] = 0; // Up, out of the house
+            velocityX[ghost] = 0;
+            velocityY[ghost] = 0;
+            ghostMode[ghost] = IN_HOUSE;
+            houseDoor[ghost] = maze.houseDoors[ghost];
+            releaseTick[ghost] = tickCount + (long) maze.houseOrder[ghost] * RELEASE_TICKS;
+        }
+        scheduleNext(tickCount);
+    }
+
+    public boolean isIntersection(int ghost) {
+        int x = actorX[ghost];
+        int y = actorY[ghost];
+
+        // Walls only line up with tile-aligned positions, so only those can be intersections
+        if (x % TILE_UNITS != 0 || y % TILE_UNITS != 0) {
+            return false;
+        }
+
+        int possibleDirections = 0;
+
+        if (!isBlocked(x, y - TILE_UNITS)) {
+            possibleDirections++; // Possible up direction
+        }
+
+        if (!isBlocked(x, y + TILE_UNITS)) {
+            possibleDirections++; // Possible down direction
+        }
+
+        if (!isBlocked(x - TILE_UNITS, y)) {
+            possibleDirections++; // Possible left direction
+        }
+
+        if (!isBlocked(x + TILE_UNITS, y)) {
+            possibleDirections++; // Possible right direction
+        }
+
+        // If there are more than 2 possible directions, an intersection is detected
+        return possibleDirections > 2;
+    }
+
+    // Bitmask of the directions (bit i = ghostDirections[i]) the ghost can move on in
+    public int openDirections(int ghost) {
+        int open = 0;
+        for (int i = 0; i < 4; i++) {
+            int x = actorX[ghost] + directionDeltaX[i];
+            int y = actorY[ghost] + directionDeltaY[i];
+            if (canOccupy(x, y)) {
+                open |= 1 << i;
+            }
+        }
+        return open;
+    }
+
+    // Returns the index-th open direction of the mask, or NO_DIRECTION if there are none
+    static int nthOpenDirection(int openDirections, int index) {
+        for (int i = 0; i < 4; i++) {
+            if ((openDirections & (1 << i)) != 0 && index-- == 0) {
+                return i;
+            }
+        }
+        return NO_DIRECTION;
+    }
+
+    static int directionIndex(char direction) {
+        return switch (direction) {
+            case 'U' -> 0;
+            case 'D' -> 1;
+            case 'L' -> 2;
+            default -> 3;
+        };
+    }
+
+    // Index of the opposite direction; U/D and L/R are paired in ghostDirections
+    static int reverseIndex(int directionIndex) {
+        return directionIndex ^ 1;
+    }
+
+    // Shared by every engine playing the same maze
+    public NavGraph navGraph() {
+        return maze.navGraph();
+    }
+
+    // Size in bytes of the state written by writeState()
+    public int stateSize() {
+        return 4 * 7 + 8 * 6 + 1
+                + 8 * (foodBits.length + pelletBits.length)
+                + actorCount * (4 * 8 + 8 + 3);
+    }
+
+    // Writes everything that changes while playing. Walls and start positions come from the tile map,
+    // and the eaten tile log only exists for renderers, which rebuild their board after readState().
+    public void writeState(ByteBuffer buffer) {
+        buffer.putInt(score).putInt(lives).putInt(level);
+        buffer.putInt(cherryX).putInt(cherryY).putInt(eatenDotsCount).putInt(ghostChain);
+        buffer.putLong(tickCount).putLong(roundStartTick).putLong(frightenedUntil).putLong(cherryUntil);
+        buffer.putLong(seed).putLong(random.state());
+        buffer.put((byte) ((isGameOver ? 1 : 0) | (powerPelletActive ? 2 : 0) | (cherryVisible ? 4 : 0)));
+        for (long bits : foodBits) {
+            buffer.putLong(bits);
+        }
+        for (long bits : pelletBits) {
+            buffer.putLong(bits);
+        }
+        for (int actor = 0; actor < actorCount; actor++) {
+            buffer.putInt(actorX[actor]).putInt(actorY[actor]);
+            buffer.putInt(previousX[actor]).putInt(previousY[actor]);
+            buffer.putInt(velocityX[actor]).putInt(velocityY[actor]);
+            buffer.putInt(houseDoor[actor]).putLong(releaseTick[actor]);
+            buffer.putInt(speedCredit[actor]);
+            buffer.put(direction[actor]).put(queuedDirection[actor]).put(ghostMode[actor]);
+        }
+    }
+
+    // Restores state written by writeState() of an engine on the same tile map
+    public void readState(ByteBuffer buffer) {
+        score = buffer.getInt();
+        lives = buffer.getInt();
+        level = buffer.getInt();
+        cherryX = buffer.getInt();
+        cherryY = buffer.getInt();
+        eatenDotsCount = buffer.getInt();
+        ghostChain = buffer.getInt();
+        tickCount = buffer.getLong();
+        roundStartTick = buffer.getLong();
+        frightenedUntil = buffer.getLong();
+        cherryUntil = buffer.getLong();
+        seed = buffer.getLong();
+        random.setState(buffer.getLong());
+        byte flags = buffer.get();
+        isGameOver = (flags & 1) != 0;
+        powerPelletActive = (flags & 2) != 0;
+        cherryVisible = (flags & 4) != 0;
+        foodCount = 0;
+        for (int i = 0; i < foodBits.length; i++) {
+            foodBits[i] = buffer.getLong();
+            foodCount += Long.bitCount(foodBits[i]);
+        }
+        pelletCount = 0;
+        for (int i = 0; i < pelletBits.length; i++) {
+            pelletBits[i] = buffer.getLong();
+            pelletCount += Long.bitCount(pelletBits[i]);
+        }
+        mapVersion++;
+        eatenTileCount = 0;
+        for (int actor = 0; actor < actorCount; actor++) {
+            actorX[actor] = buffer.getInt();
+            actorY[actor] = buffer.getInt();
+            previousX[actor] = buffer.getInt();
+            previousY[actor] = buffer.getInt();
+            velocityX[actor] = buffer.getInt();
+            velocityY[actor] = buffer.getInt();
+            houseDoor[actor] = buffer.getInt();
+            releaseTick[actor] = buffer.getLong();
+            speedCredit[actor] = buffer.getInt();
+            direction[actor] = buffer.get();
+            queuedDirection[actor] = buffer.get();
+            ghostMode[actor] = buffer.get();
+        }
+        scheduleNext(tickCount);
+    }
+
+    public byte[] snapshot() {
+        ByteBuffer buffer = ByteBuffer.allocate(stateSize());
+        writeState(buffer);
+        return buffer.array();
+    }
+
+    public void restore(byte[] snapshot) {
+        readState(ByteBuffer.wrap(snapshot));
+    }
+
+    // Copies what GameRenderer and Hud draw into view, an engine on the same maze that is never stepped,
+    // so a frame can be painted from it without holding this engine's monitor. Allocates nothing.
+    public void copyViewTo(GameEngine view) {
+        if (view.mapVersion != mapVersion || view.eatenTileCount > eatenTileCount) {
+            System.arraycopy(tiles, 0, view.tiles, 0, tiles.length);
+            view.eatenTileCount = 0;
+            view.mapVersion = mapVersion;
+        }
+        System.arraycopy(eatenTiles, view.eatenTileCount, view.eatenTiles, view.eatenTileCount,
+                eatenTileCount - view.eatenTileCount);
+        view.eatenTileCount = eatenTileCount;
+        System.arraycopy(foodBits, 0, view.foodBits, 0, foodBits.length);
+        System.arraycopy(pelletBits, 0, view.pelletBits, 0, pelletBits.length);
+        System.arraycopy(actorX, 0, view.actorX, 0, actorCount);
+        System.arraycopy(actorY, 0, view.actorY, 0, actorCount);
+        System.arraycopy(previousX, 0, view.previousX, 0, actorCount);
+        System.arraycopy(previousY, 0, view.previousY, 0, actorCount);
+        System.arraycopy(direction, 0, view.direction, 0, actorCount);
+        System.arraycopy(ghostMode, 0, view.ghostMode, 0, actorCount);
+        view.score = score;
+        view.lives = lives;
+        view.level = level;
+        view.tickCount = tickCount;
+        view.isGameOver = isGameOver;
+        view.powerPelletActive = powerPelletActive;
+        view.cherryVisible = cherryVisible;
+        view.cherryX = cherryX;
+        view.cherryY = cherryY;
+    }
+
+    public boolean isBlocked(int x, int y) {
+        if (x < 0 || x >= WIDTH || y < 0 || y >= HEIGHT) {
+            return true; // Out of bounds
+        }
+        // Walls sit on whole tiles, so only a tile-aligned position can match one
+        return x % TILE_UNITS == 0
+                && y % TILE_UNITS == 0
+                && tiles[tileIndex(y / TILE_UNITS, x / TILE_UNITS)] == WALL_TILE;
+    }
+}
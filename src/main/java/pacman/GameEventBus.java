@@ -0,0 +1,232 @@
+package pacman;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+// Carries game events from the tick to listeners running on their own threads. The tick thread
+// is the only publisher and never waits: events go into a ring of preallocated primitive slots,
+// and a listener that falls a whole ring behind skips ahead and hears how many it missed through
+// eventsDropped(), so a slow upload can never hold up the game or the other listeners.
+//
+// Every slot carries the sequence number of the event in it, written last. A reader checks it
+// before and after copying the slot out; a change means the publisher lapped it mid-read.
+// Idle listener threads park and get woken by the next publish.
+public class GameEventBus implements AutoCloseable {
+    static final byte DOT_EATEN = 0;
+    static final byte PELLET_EATEN = 1;
+    static final byte GHOST_EATEN = 2;
+    static final byte PACMAN_DIED = 3;
+    static final byte CHERRY_SPAWNED = 4;
+    static final byte CHERRY_EATEN = 5;
+    static final byte LEVEL_CLEARED = 6;
+
+    private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle PUBLISHED;
+    private static final long WRITING = -1;
+    private static final int SPINS = 100; // Before a listener parks
+
+    static {
+        try {
+            PUBLISHED = MethodHandles.lookup().findVarHandle(GameEventBus.class, "published", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int mask;
+    private final long[] sequences; // Sequence of the event in each slot, WRITING while being filled
+    private final long[] ticks;
+    private final byte[] types;
+    private final int[] subjects; // Tile or ghost
+    private final int[] values; // Points, lives left, level or fruit
+
+    @SuppressWarnings("unused") // Accessed through PUBLISHED
+    private volatile long published = -1; // Last event sequence readers may take
+    private long next = 0; // Publisher only
+
+    private volatile Subscription[] subscriptions = new Subscription[0];
+    private volatile boolean closed = false;
+
+    // One listener and the thread feeding it
+    public final class Subscription {
+        private final GameEventListener listener;
+        private final Thread thread;
+        private volatile boolean waiting = false;
+        private volatile boolean stopped = false;
+        private volatile long position; // Next sequence to read
+        private volatile long dropped = 0;
+
+        private Subscription(GameEventListener listener, String name) {
+            this.listener = listener;
+            this.position = (long) PUBLISHED.getAcquire(GameEventBus.this) + 1;
+            thread = new Thread(this::run, "game-events-" + name);
+            thread.setDaemon(true);
+        }
+
+        // Events published but not handed to the listener yet
+        public long backlog() {
+            return Math.max(0, (long) PUBLISHED.getAcquire(GameEventBus.this) + 1 - position);
+        }
+
+        public long dropped() {
+            return dropped;
+        }
+
+        private void run() {
+            long position = this.position;
+            int idle = 0;
+            while (!closed && !stopped) {
+                long head = (long) PUBLISHED.getAcquire(GameEventBus.this);
+                if (position > head) {
+                    if (++idle < SPINS) {
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    waiting = true;
+                    // Recheck after announcing, or a publish in between would not wake us. Both sides store
+                    // then load volatile, so either the publisher sees waiting or we see its event.
+                    if ((long) PUBLISHED.getVolatile(GameEventBus.this) < position && !closed && !stopped) {
+                        LockSupport.park(this);
+                    }
+                    waiting = false;
+                    idle = 0;
+                    continue;
+                }
+                idle = 0;
+
+                long oldest = head - mask;
+                if (position < oldest) {
+                    skip(oldest - position);
+                    position = oldest;
+                }
+                if (deliver(position)) {
+                    position++;
+                } else {
+                    // Lapped while reading: whatever is left of the ring now starts further on
+                    long newest = (long) PUBLISHED.getAcquire(GameEventBus.this);
+                    long skipTo = Math.max(position + 1, newest - mask);
+                    skip(skipTo - position);
+                    position = skipTo;
+                }
+                this.position = position;
+            }
+        }
+
+        private void skip(long count) {
+            dropped += count;
+            try {
+                listener.eventsDropped(count);
+            } catch (RuntimeException e) {
+                failed(e);
+            }
+        }
+
+        // Copies the slot out and calls the listener, or returns false if the slot was overwritten
+        private boolean deliver(long sequence) {
+            int slot = (int) sequence & mask;
+            if ((long) SEQUENCES.getAcquire(sequences, slot) != sequence) {
+                return false;
+            }
+            long tick = ticks[slot];
+            byte type = types[slot];
+            int subject = subjects[slot];
+            int value = values[slot];
+            VarHandle.loadLoadFence();
+            if ((long) SEQUENCES.getAcquire(sequences, slot) != sequence) {
+                return false;
+            }
+            try {
+                switch (type) {
+                    case DOT_EATEN -> listener.dotEaten(tick, subject, value);
+                    case PELLET_EATEN -> listener.pelletEaten(tick, subject, value);
+                    case GHOST_EATEN -> listener.ghostEaten(tick, subject, value);
+                    case PACMAN_DIED -> listener.pacmanDied(tick, subject, value);
+                    case CHERRY_SPAWNED -> listener.cherrySpawned(tick, subject, Fruit.values()[value]);
+                    case CHERRY_EATEN -> listener.cherryEaten(tick, Fruit.values()[subject], value);
+                    case LEVEL_CLEARED -> listener.levelCleared(tick, value);
+                    default -> {}
+                }
+            } catch (RuntimeException e) {
+                failed(e);
+            }
+            return true;
+        }
+
+        private void failed(RuntimeException e) {
+            System.err.println(thread.getName() + " listener failed: " + e);
+        }
+    }
+
+    // capacity is rounded up to a power of two
+    public GameEventBus(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        sequences = new long[size];
+        Arrays.fill(sequences, WRITING);
+        ticks = new long[size];
+        types = new byte[size];
+        subjects = new int[size];
+        values = new int[size];
+    }
+
+    // Starts feeding a listener every event published from now on
+    public synchronized Subscription subscribe(String name, GameEventListener listener) {
+        Subscription subscription = new Subscription(listener, name);
+        Subscription[] current = subscriptions;
+        Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = subscription;
+        subscriptions = updated;
+        subscription.thread.start();
+        return subscription;
+    }
+
+    public synchronized void unsubscribe(Subscription subscription) {
+        Subscription[] current = subscriptions;
+        int index = Arrays.asList(current).indexOf(subscription);
+        if (index < 0) {
+            return;
+        }
+        Subscription[] updated = new Subscription[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, index);
+        System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+        subscriptions = updated;
+        stop(subscription);
+    }
+
+    // Called from the tick only. Allocation-free and wait-free.
+    void publish(byte type, long tick, int subject, int value) {
+        long sequence = next++;
+        int slot = (int) sequence & mask;
+        SEQUENCES.setOpaque(sequences, slot, WRITING);
+        VarHandle.storeStoreFence();
+        ticks[slot] = tick;
+        types[slot] = type;
+        subjects[slot] = subject;
+        values[slot] = value;
+        SEQUENCES.setRelease(sequences, slot, sequence);
+        PUBLISHED.setVolatile(this, sequence); // Not release: it must not pass the read of waiting below
+
+        for (Subscription subscription : subscriptions) {
+            if (subscription.waiting) {
+                subscription.waiting = false;
+                LockSupport.unpark(subscription.thread);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            stop(subscription);
+        }
+        subscriptions = new Subscription[0];
+    }
+
+    private static void stop(Subscription subscription) {
+        subscription.stopped = true;
+        LockSupport.unpark(subscription.thread);
+    }
+}
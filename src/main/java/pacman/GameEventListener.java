@@ -0,0 +1,23 @@
+package pacman;
+
+// Receives the events of a GameEventBus on the subscription's own thread, in the order they
+// happened. Tiles are row * columns + column indexes, ghosts are actor indexes of the engine.
+public interface GameEventListener {
+    default void dotEaten(long tick, int tile, int points) {}
+
+    default void pelletEaten(long tick, int tile, int points) {}
+
+    default void ghostEaten(long tick, int ghost, int points) {}
+
+    // livesLeft is 0 when this ended the game
+    default void pacmanDied(long tick, int ghost, int livesLeft) {}
+
+    default void cherrySpawned(long tick, int tile, Fruit fruit) {}
+
+    default void cherryEaten(long tick, Fruit fruit, int points) {}
+
+    default void levelCleared(long tick, int level) {}
+
+    // The listener fell a whole ring behind and missed this many events
+    default void eventsDropped(long count) {}
+}
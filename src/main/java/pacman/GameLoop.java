@@ -0,0 +1,127 @@
+package pacman;
+
+import javax.swing.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+// Drives a PacManPanel from its own thread. Logic advances in fixed 50ms ticks; painting only
+// holds the engine while the panel copies what it draws, so a slow frame does not delay them.
+// Frames are requested at the render rate with an interpolation factor so actors glide between
+// the positions of the last two ticks.
+public class GameLoop implements Runnable {
+    static final long TICK_NANOS = 50_000_000L; // The rules are tuned for 20 ticks per second
+    private final int MAX_TICKS_PER_FRAME = 5; // Catch-up limit after a stall
+    private final long REPORT_NANOS = 5_000_000_000L;
+    private final boolean reportMetrics = Boolean.getBoolean("pacman.metrics"); // -Dpacman.metrics=true
+
+    private final PacManPanel panel;
+    private final long frameNanos;
+    private final FrameMetrics metrics = new FrameMetrics();
+    private final AtomicBoolean framePending = new AtomicBoolean();
+    private volatile boolean running = false;
+    private Thread thread;
+    private boolean registeredMetrics = false;
+
+    GameLoop(PacManPanel panel, int framesPerSecond) {
+        this.panel = panel;
+        this.frameNanos = 1_000_000_000L / framesPerSecond;
+    }
+
+    public FrameMetrics metrics() {
+        return metrics;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        registeredMetrics = metrics.register();
+        thread = new Thread(this, "game-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (thread != null && thread != Thread.currentThread()) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        thread = null;
+        if (registeredMetrics) {
+            metrics.unregister();
+            registeredMetrics = false;
+        }
+    }
+
+    @Override
+    public void run() {
+        long previous = System.nanoTime();
+        long lag = 0;
+        long nextFrame = previous;
+        long nextReport = previous + REPORT_NANOS;
+
+        while (running) {
+            long now = System.nanoTime();
+            lag += now - previous;
+            previous = now;
+
+            int ticks = 0;
+            boolean measure = metrics.isEnabled();
+            while (lag >= TICK_NANOS && ticks < MAX_TICKS_PER_FRAME) {
+                long tickStart = measure ? System.nanoTime() : 0;
+                panel.tick();
+                if (measure) {
+                    metrics.recordTick(System.nanoTime() - tickStart);
+                }
+                lag -= TICK_NANOS;
+                ticks++;
+            }
+            if (lag >= TICK_NANOS) {
+                lag = 0; // Too far behind; drop the backlog instead of spiralling
+            }
+            if (measure) {
+                metrics.sampleAllocationRate(now);
+            }
+
+            // Hand the frame to the EDT unless the previous one has not been painted yet
+            float alpha = (float) lag / TICK_NANOS;
+            if (framePending.compareAndSet(false, true)) {
+                long queued = measure ? System.nanoTime() : 0;
+                SwingUtilities.invokeLater(() -> {
+                    long renderStart = measure ? System.nanoTime() : 0;
+                    panel.renderFrame(alpha);
+                    if (measure) {
+                        metrics.recordEdtDelay(renderStart - queued);
+                        metrics.recordRender(System.nanoTime() - renderStart);
+                    }
+                    framePending.set(false);
+                });
+            } else {
+                metrics.recordDroppedFrame();
+            }
+
+            if (reportMetrics && now >= nextReport) {
+                System.out.println(metrics);
+                nextReport = now + REPORT_NANOS;
+            }
+
+            nextFrame += frameNanos;
+            long sleep = nextFrame - System.nanoTime();
+            if (sleep > 0) {
+                LockSupport.parkNanos(sleep);
+            } else {
+                nextFrame = System.nanoTime(); // Running late, do not try to make up frames
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package pacman;
+
+import java.util.Random;
+
+// Same sequence as java.util.Random for a given seed, but with its state readable and
+// writable so it can go into game snapshots. Not thread-safe; each engine owns one.
+public class GameRandom extends Random {
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private long state;
+
+    public GameRandom(long seed) {
+        super(seed);
+        setSeed(seed); // Random's constructor runs before our field exists
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    public long state() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state & MASK;
+    }
+}
@@ -0,0 +1,251 @@
+package pacman;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+
+// Draws a GameEngine. Walls, food and power pellets live in a cached static layer that is
+// rebuilt once per loadMap() and patched tile by tile as items get eaten, so a frame is one
+// image blit plus the actors and the HUD's cached text. Sprites come pre-scaled from SpriteCache.
+public class GameRenderer {
+    private final int TILE_SIZE = GameEngine.TILE_SIZE;
+    private final int ITEM_OFFSET = GameEngine.toPixels(GameEngine.ITEM_OFFSET);
+    private final int FOOD_SIZE = GameEngine.toPixels(GameEngine.FOOD_SIZE);
+    private final int PELLET_SIZE = GameEngine.toPixels(GameEngine.PELLET_SIZE);
+
+    private final GraphicsConfiguration graphicsConfiguration; // Null when headless
+    private final CompletableFuture<SpriteCache.Sprites> sprites;
+    final Hud hud;
+    private BufferedImage staticLayer;
+    private GameEngine layerEngine;
+    private int layerMapVersion;
+    private int layerEatenTileCount;
+    private SpriteCache.Sprites layerSprites;
+
+    GameRenderer(GraphicsConfiguration graphicsConfiguration) {
+        this.graphicsConfiguration = graphicsConfiguration;
+        this.hud = new Hud(graphicsConfiguration);
+        // A failed load completes with null and the placeholders stay
+        this.sprites = SpriteCache.sprites(graphicsConfiguration, TILE_SIZE).exceptionally(e -> {
+            System.err.println("Could not load sprites: " + e);
+            return null;
+        });
+    }
+
+    // Completes once the sprites are ready; until then frames use plain shapes
+    CompletableFuture<SpriteCache.Sprites> spritesLoaded() {
+        return sprites;
+    }
+
+    public void render(Graphics g, GameEngine engine) {
+        render(g, engine, 1f);
+    }
+
+    // Draws the board with actors alpha (0-1) of the way from their previous to their current
+    // position, honouring the clip so partial repaints only touch what they need
+    public void render(Graphics g, GameEngine engine, float alpha) {
+        if (engine.isGameOver) {
+            gameOver(g, engine);
+            return;
+        }
+
+        SpriteCache.Sprites loaded = sprites.getNow(null);
+        updateStaticLayer(engine, loaded);
+        g.drawImage(staticLayer, 0, 0, null);
+
+        Rectangle clip = g.getClipBounds();
+
+        // Draw the level's bonus fruit if visible
+        int cherryX = GameEngine.toPixels(engine.cherryX);
+        int cherryY = GameEngine.toPixels(engine.cherryY);
+        if (engine.cherryVisible && intersects(clip, cherryX, cherryY)) {
+            drawFruit(g, loaded, engine.fruit(), cherryX, cherryY);
+        }
+
+        int pacmanX = drawX(engine, GameEngine.PACMAN, alpha);
+        int pacmanY = drawY(engine, GameEngine.PACMAN, alpha);
+        if (intersects(clip, pacmanX, pacmanY)) {
+            drawSprite(g, loaded, Sprite.pacman(engine.direction[GameEngine.PACMAN]), pacmanX, pacmanY);
+        }
+
+        for (int ghost = 1; ghost < engine.actorCount; ghost++) {
+            int ghostX = drawX(engine, ghost, alpha);
+            int ghostY = drawY(engine, ghost, alpha);
+            if (!intersects(clip, ghostX, ghostY)) {
+                continue;
+            }
+            byte mode = engine.ghostMode[ghost];
+            if (mode == GameEngine.EYES || mode == GameEngine.ENTERING) {
+                drawEyes(g, engine.direction[ghost], ghostX, ghostY);
+            } else if (mode == GameEngine.FRIGHTENED) {
+                drawSprite(g, loaded, Sprite.SCARED_GHOST, ghostX, ghostY);
+            } else {
+                drawSprite(g, loaded, ghostSprite(engine.actorKind[ghost]), ghostX, ghostY);
+            }
+        }
+
+        hud.draw(g, clip, engine);
+    }
+
+    public void gameOver(Graphics g, GameEngine engine) {
+        hud.drawGameOver(g, engine);
+    }
+
+    private void updateStaticLayer(GameEngine engine, SpriteCache.Sprites loaded) {
+        if (staticLayer == null || layerEngine != engine || layerMapVersion != engine.mapVersion
+                || layerSprites != loaded) {
+            rebuildStaticLayer(engine, loaded);
+            return;
+        }
+        if (layerEatenTileCount == engine.eatenTileCount) {
+            return;
+        }
+
+        // Blank out the tiles eaten since the last frame
+        Graphics2D g = staticLayer.createGraphics();
+        g.setColor(Color.BLACK);
+        for (int i = layerEatenTileCount; i < engine.eatenTileCount; i++) {
+            int index = engine.eatenTiles[i];
+            int x = (index % engine.COLUMN_COUNT) * TILE_SIZE;
+            int y = (index / engine.COLUMN_COUNT) * TILE_SIZE;
+            g.fillRect(x, y, TILE_SIZE, TILE_SIZE);
+        }
+        g.dispose();
+        layerEatenTileCount = engine.eatenTileCount;
+    }
+
+    private void rebuildStaticLayer(GameEngine engine, SpriteCache.Sprites loaded) {
+        if (staticLayer == null
+                || staticLayer.getWidth() != engine.BOARD_WIDTH
+                || staticLayer.getHeight() != engine.BOARD_HEIGHT) {
+            staticLayer = createLayer(engine.BOARD_WIDTH, engine.BOARD_HEIGHT);
+        }
+
+        Graphics2D g = staticLayer.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, engine.BOARD_WIDTH, engine.BOARD_HEIGHT);
+
+        g.setColor(Color.WHITE);
+        for (int tile = 0; tile < engine.tiles.length; tile++) {
+            int x = (tile % engine.COLUMN_COUNT) * TILE_SIZE;
+            int y = (tile / engine.COLUMN_COUNT) * TILE_SIZE;
+            int itemX = x + ITEM_OFFSET;
+            int itemY = y + ITEM_OFFSET;
+            if (engine.tiles[tile] != 0) {
+                drawSprite(g, loaded, Sprite.WALL, x, y);
+            } else if (engine.hasFood(tile)) {
+                g.fillRect(itemX, itemY, FOOD_SIZE, FOOD_SIZE);
+            } else if (engine.hasPellet(tile)) {
+                g.fillOval(itemX, itemY, PELLET_SIZE, PELLET_SIZE);
+            }
+        }
+        g.dispose();
+
+        layerEngine = engine;
+        layerSprites = loaded;
+        layerMapVersion = engine.mapVersion;
+        layerEatenTileCount = engine.eatenTileCount;
+    }
+
+    // Interpolated drawing position of an actor in pixels; jumps (tunnel wraps, resets) are not smoothed
+    static int drawX(GameEngine engine, int actor, float alpha) {
+        int dx = engine.actorX[actor] - engine.previousX[actor];
+        if (Math.abs(dx) > GameEngine.TILE_UNITS) {
+            return GameEngine.toPixels(engine.actorX[actor]);
+        }
+        return GameEngine.toPixels(engine.previousX[actor] + Math.round(dx * alpha));
+    }
+
+    static int drawY(GameEngine engine, int actor, float alpha) {
+        int dy = engine.actorY[actor] - engine.previousY[actor];
+        if (Math.abs(dy) > GameEngine.TILE_UNITS) {
+            return GameEngine.toPixels(engine.actorY[actor]);
+        }
+        return GameEngine.toPixels(engine.previousY[actor] + Math.round(dy * alpha));
+    }
+
+    // A screen-compatible image lets Java2D keep the layer in video memory
+    private BufferedImage createLayer(int width, int height) {
+        if (graphicsConfiguration != null) {
+            return graphicsConfiguration.createCompatibleImage(width, height, Transparency.OPAQUE);
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    // Whether a tile-sized sprite at x, y is inside the clip
+    private boolean intersects(Rectangle clip, int x, int y) {
+        return clip == null || clip.intersects(x, y, TILE_SIZE, TILE_SIZE);
+    }
+
+    // Draws a pre-scaled sprite, or a plain shape in its colour while the sprites are still loading
+    private void drawSprite(Graphics g, SpriteCache.Sprites loaded, Sprite sprite, int x, int y) {
+        if (loaded != null) {
+            g.drawImage(loaded.get(sprite), x, y, null);
+            return;
+        }
+        g.setColor(placeholderColor(sprite));
+        if (sprite == Sprite.WALL) {
+            g.fillRect(x, y, TILE_SIZE, TILE_SIZE);
+        } else {
+            g.fillOval(x + 2, y + 2, TILE_SIZE - 4, TILE_SIZE - 4);
+        }
+        g.setColor(Color.WHITE);
+    }
+
+    // Only the cherry has a sprite; the other fruits are discs in their colour
+    private void drawFruit(Graphics g, SpriteCache.Sprites loaded, Fruit fruit, int x, int y) {
+        if (fruit == Fruit.CHERRY) {
+            drawSprite(g, loaded, Sprite.CHERRY, x, y);
+            return;
+        }
+        g.setColor(switch (fruit) {
+            case STRAWBERRY -> Color.PINK;
+            case ORANGE -> Color.ORANGE;
+            case APPLE -> Color.RED;
+            case MELON -> Color.GREEN;
+            case GALAXIAN -> Color.CYAN;
+            case BELL -> Color.YELLOW;
+            default -> Color.LIGHT_GRAY;
+        });
+        g.fillOval(x + 4, y + 4, TILE_SIZE - 8, TILE_SIZE - 8);
+        g.setColor(Color.WHITE);
+    }
+
+    // An eaten ghost on its way home: two eyes looking where it is going
+    private void drawEyes(Graphics g, int direction, int x, int y) {
+        int eye = TILE_SIZE / 4;
+        int pupil = TILE_SIZE / 8;
+        int top = y + TILE_SIZE / 4;
+        int lookX = GameEngine.directionDeltaX[direction] * (eye - pupil) / 2;
+        int lookY = GameEngine.directionDeltaY[direction] * (eye - pupil) / 2;
+        for (int i = 1; i <= 3; i += 2) {
+            int left = x + TILE_SIZE * i / 4 - eye / 2;
+            g.setColor(Color.WHITE);
+            g.fillOval(left, top, eye, eye + 2);
+            g.setColor(Color.BLUE);
+            g.fillOval(left + (eye - pupil) / 2 + lookX, top + (eye + 2 - pupil) / 2 + lookY, pupil, pupil);
+        }
+        g.setColor(Color.WHITE);
+    }
+
+    private static Color placeholderColor(Sprite sprite) {
+        return switch (sprite) {
+            case WALL -> Color.BLUE.darker();
+            case BLUE_GHOST -> Color.CYAN;
+            case ORANGE_GHOST -> Color.ORANGE;
+            case PINK_GHOST -> Color.PINK;
+            case RED_GHOST, CHERRY -> Color.RED;
+            case SCARED_GHOST -> Color.BLUE;
+            default -> Color.YELLOW;
+        };
+    }
+
+    private static Sprite ghostSprite(char kind) {
+        return switch (kind) {
+            case 'b' -> Sprite.BLUE_GHOST;
+            case 'o' -> Sprite.ORANGE_GHOST;
+            case 'p' -> Sprite.PINK_GHOST;
+            default -> Sprite.RED_GHOST;
+        };
+    }
+}
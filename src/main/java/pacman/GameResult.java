@@ -0,0 +1,5 @@
+package pacman;
+
+// Outcome of one simulated game
+public record GameResult(long seed, int score, long survivalTicks, int levelReached, int[] livesLostPerLevel) {
+}
@@ -0,0 +1,169 @@
+package pacman;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+
+// One game hosted by a GameServer. Only the server's network thread touches it. Each tick it
+// steps the engine and encodes what changed since the last tick once, for every member to share.
+class GameRoom {
+    final int id;
+    final GameEngine engine;
+    private final RemoteGhostPolicy ghosts;
+    private final boolean[] actorTaken;
+
+    private char pendingPacmanDirection = ' '; // Latest pacman input since the last tick
+
+    // What the members were last sent
+    private final int[] sentX;
+    private final int[] sentY;
+    private final byte[] sentDirection;
+    private final byte[] sentGhostMode;
+    private int sentEatenTileCount;
+    private int sentMapVersion;
+
+    private ByteBuffer message = ByteBuffer.allocate(256);
+
+    GameRoom(int id, Maze maze, GameSettings settings) {
+        this.id = id;
+        this.ghosts = new RemoteGhostPolicy(new ChaseScatterGhostPolicy());
+        this.engine = new GameEngine(maze, ThreadLocalRandom.current().nextLong(), settings, ghosts);
+        int actorCount = engine.actorCount;
+        actorTaken = new boolean[actorCount];
+        sentX = new int[actorCount];
+        sentY = new int[actorCount];
+        sentDirection = new byte[actorCount];
+        sentGhostMode = new byte[actorCount];
+        markSent();
+    }
+
+    // Hands out the actor for a role, or -1 when there is none left (the member then only watches)
+    int join(byte role) {
+        if (role == NetProtocol.ROLE_PACMAN && !actorTaken[GameEngine.PACMAN]) {
+            actorTaken[GameEngine.PACMAN] = true;
+            return GameEngine.PACMAN;
+        }
+        if (role == NetProtocol.ROLE_GHOST) {
+            for (int ghost = 1; ghost < actorTaken.length; ghost++) {
+                if (!actorTaken[ghost]) {
+                    actorTaken[ghost] = true;
+                    ghosts.setControlled(ghost, true);
+                    return ghost;
+                }
+            }
+        }
+        return -1;
+    }
+
+    void leave(int actor) {
+        if (actor >= 0) {
+            actorTaken[actor] = false;
+            if (actor != GameEngine.PACMAN) {
+                ghosts.setControlled(actor, false);
+            }
+        }
+    }
+
+    void input(int actor, int direction) {
+        if (actor == GameEngine.PACMAN) {
+            if (engine.isGameOver) {
+                engine.restart(ThreadLocalRandom.current().nextLong());
+            } else {
+                pendingPacmanDirection = GameEngine.ghostDirections[direction];
+            }
+        } else if (actor > 0) {
+            ghosts.request(actor, direction);
+        }
+    }
+
+    // Steps the game and returns this tick's message (a frame, ready to read), or null if nothing changed
+    ByteBuffer tick() {
+        boolean wasOver = engine.isGameOver;
+        engine.step(pendingPacmanDirection);
+        pendingPacmanDirection = ' ';
+        if (wasOver && engine.isGameOver && engine.mapVersion == sentMapVersion) {
+            return null;
+        }
+
+        message.clear();
+        message.putInt(0); // Frame length, filled in below
+        if (engine.mapVersion != sentMapVersion) {
+            putFullState(NetProtocol.FULL_STATE);
+        } else {
+            putDelta();
+        }
+        markSent();
+        message.putInt(0, message.position() - 4);
+        return message.flip();
+    }
+
+    // The frame a member gets on joining
+    ByteBuffer welcome(int actor) {
+        byte[] maze = engine.maze.toBytes();
+        ByteBuffer welcome = ByteBuffer.allocate(4 + 1 + 4 + 1 + 4 + maze.length + 4 + engine.stateSize());
+        welcome.putInt(welcome.capacity() - 4);
+        welcome.put(NetProtocol.WELCOME).putInt(id).put((byte) actor);
+        welcome.putInt(maze.length).put(maze);
+        welcome.putInt(engine.stateSize());
+        engine.writeState(welcome);
+        return welcome.flip();
+    }
+
+    private void putFullState(byte type) {
+        ensure(1 + 4 + engine.stateSize());
+        message.put(type).putInt(engine.stateSize());
+        engine.writeState(message);
+    }
+
+    private void putDelta() {
+        int changed = 0;
+        for (int actor = 0; actor < engine.actorCount; actor++) {
+            if (hasChanged(actor)) {
+                changed++;
+            }
+        }
+        int eaten = engine.eatenTileCount - sentEatenTileCount;
+        ensure(1 + 8 + 4 * 3 + 1 + 2 + changed * 11 + 4 + eaten * 4);
+
+        int flags = (engine.isGameOver ? NetProtocol.FLAG_GAME_OVER : 0)
+                | (engine.powerPelletActive ? NetProtocol.FLAG_POWER_PELLET : 0)
+                | (engine.cherryVisible ? NetProtocol.FLAG_CHERRY : 0);
+        message.put(NetProtocol.DELTA).putLong(engine.tickCount);
+        message.putInt(engine.score).putInt(engine.lives).putInt(engine.level).put((byte) flags);
+        message.putShort((short) changed);
+        for (int actor = 0; actor < engine.actorCount; actor++) {
+            if (hasChanged(actor)) {
+                message.put((byte) actor).putInt(engine.actorX[actor]).putInt(engine.actorY[actor]);
+                message.put(engine.direction[actor]).put(engine.ghostMode[actor]);
+            }
+        }
+        message.putInt(eaten);
+        for (int i = sentEatenTileCount; i < engine.eatenTileCount; i++) {
+            message.putInt(engine.eatenTiles[i]);
+        }
+    }
+
+    private boolean hasChanged(int actor) {
+        return engine.actorX[actor] != sentX[actor]
+                || engine.actorY[actor] != sentY[actor]
+                || engine.direction[actor] != sentDirection[actor]
+                || engine.ghostMode[actor] != sentGhostMode[actor];
+    }
+
+    private void markSent() {
+        System.arraycopy(engine.actorX, 0, sentX, 0, engine.actorCount);
+        System.arraycopy(engine.actorY, 0, sentY, 0, engine.actorCount);
+        System.arraycopy(engine.direction, 0, sentDirection, 0, engine.actorCount);
+        System.arraycopy(engine.ghostMode, 0, sentGhostMode, 0, engine.actorCount);
+        sentEatenTileCount = engine.eatenTileCount;
+        sentMapVersion = engine.mapVersion;
+    }
+
+    private void ensure(int bytes) {
+        if (message.remaining() < bytes) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(message.capacity() * 2, message.position() + bytes));
+            message.flip();
+            bigger.put(message);
+            message = bigger;
+        }
+    }
+}
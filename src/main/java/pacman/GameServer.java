@@ -0,0 +1,316 @@
+package pacman;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// Hosts any number of GameRooms for TCP clients speaking NetProtocol. A single thread runs a
+// selector for all connections and steps every room on the shared 50ms tick, so a node needs
+// no thread per connection or per room. Each room encodes its tick once; members get a copy
+// appended to their outbound buffer and all of a tick's output goes out in one write per client.
+public class GameServer implements Runnable {
+    private static final int MAX_TICKS_BEHIND = 5;
+    private static final int MAX_PENDING_OUTPUT = 4 << 20; // Clients further behind get dropped
+
+    private final Maze maze;
+    private final GameSettings settings;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final Map<Integer, GameRoom> rooms = new HashMap<>();
+    private final Map<GameRoom, List<Connection>> members = new HashMap<>();
+    private final List<Connection> flushQueue = new ArrayList<>();
+
+    private volatile boolean running = false;
+    private Thread thread;
+
+    // One client socket, owned by the server thread
+    private static final class Connection {
+        final SocketChannel channel;
+        final SelectionKey key;
+        ByteBuffer inbound = ByteBuffer.allocate(64);
+        ByteBuffer outbound = ByteBuffer.allocate(1024); // Write mode: filled up to position
+        boolean queued = false;
+        boolean overflowed = false; // Too far behind on output, dropped at the next flush
+        GameRoom room;
+        int actor = -1;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+
+    public GameServer(int port, Maze maze, GameSettings settings) throws IOException {
+        this.maze = maze;
+        this.settings = settings;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int port() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this, "game-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        Thread current;
+        synchronized (this) {
+            running = false;
+            current = thread;
+            thread = null;
+        }
+        if (current != null) {
+            selector.wakeup();
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        long nextTick = System.nanoTime() + GameLoop.TICK_NANOS;
+        try {
+            while (running) {
+                long waitMillis = Math.max(1, (nextTick - System.nanoTime()) / 1_000_000);
+                selector.select(waitMillis);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+
+                long now = System.nanoTime();
+                if (now - nextTick > MAX_TICKS_BEHIND * GameLoop.TICK_NANOS) {
+                    nextTick = now; // Overloaded: slow the game down rather than spiral
+                }
+                while (now >= nextTick) {
+                    tickRooms();
+                    nextTick += GameLoop.TICK_NANOS;
+                }
+                flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Game server stopped: " + e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            closeQuietly(serverChannel.keyFor(selector));
+        }
+    }
+
+    private void handle(SelectionKey key) throws IOException {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                SelectionKey clientKey = channel.register(selector, SelectionKey.OP_READ);
+                clientKey.attach(new Connection(channel, clientKey));
+            }
+            return;
+        }
+
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                read(connection);
+            }
+            if (key.isValid() && key.isWritable()) {
+                write(connection);
+            }
+        } catch (IOException | BufferUnderflowException e) {
+            disconnect(connection); // Gone, or sent a malformed frame
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        if (connection.channel.read(connection.inbound) < 0) {
+            disconnect(connection);
+            return;
+        }
+        ByteBuffer in = connection.inbound;
+        in.flip();
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if (length <= 0 || length > NetProtocol.MAX_FRAME) {
+                throw new IOException("Bad frame length " + length);
+            }
+            if (in.remaining() < 4 + length) {
+                break;
+            }
+            // The message only sees its own frame, so a short one cannot read into the next
+            int end = in.position() + 4 + length;
+            int limit = in.limit();
+            in.position(in.position() + 4).limit(end);
+            try {
+                receive(connection, in);
+            } finally {
+                in.limit(limit);
+            }
+            in.position(end);
+        }
+        in.compact();
+        if (!in.hasRemaining()) {
+            ByteBuffer bigger = ByteBuffer.allocate(in.capacity() * 2);
+            in.flip();
+            connection.inbound = bigger.put(in);
+        }
+    }
+
+    private void receive(Connection connection, ByteBuffer in) throws IOException {
+        int length = in.remaining();
+        byte type = in.get();
+        if (length != (type == NetProtocol.JOIN ? NetProtocol.JOIN_LENGTH : NetProtocol.INPUT_LENGTH)) {
+            throw new IOException("Bad length " + length + " for message " + type);
+        }
+        if (type == NetProtocol.JOIN && connection.room == null) {
+            int roomId = in.getInt();
+            byte role = in.get();
+            GameRoom room = rooms.computeIfAbsent(roomId, id -> new GameRoom(id, maze, settings));
+            connection.room = room;
+            connection.actor = room.join(role);
+            members.computeIfAbsent(room, r -> new ArrayList<>()).add(connection);
+            enqueue(connection, room.welcome(connection.actor));
+        } else if (type == NetProtocol.INPUT && connection.room != null) {
+            int direction = in.get();
+            if (direction >= 0 && direction < 4) {
+                connection.room.input(connection.actor, direction);
+            }
+        } else {
+            throw new IOException("Unexpected message " + type);
+        }
+    }
+
+    private void tickRooms() {
+        for (Map.Entry<GameRoom, List<Connection>> entry : members.entrySet()) {
+            ByteBuffer message = entry.getKey().tick();
+            if (message == null) {
+                continue;
+            }
+            for (Connection connection : entry.getValue()) {
+                enqueue(connection, message.duplicate());
+            }
+        }
+    }
+
+    private void enqueue(Connection connection, ByteBuffer frame) {
+        ByteBuffer out = connection.outbound;
+        if (out.remaining() < frame.remaining()) {
+            int needed = out.position() + frame.remaining();
+            if (needed > MAX_PENDING_OUTPUT) {
+                connection.overflowed = true;
+            } else {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, needed));
+                out.flip();
+                connection.outbound = out = bigger.put(out);
+            }
+        }
+        if (!connection.overflowed) {
+            out.put(frame);
+        }
+        if (!connection.queued) {
+            connection.queued = true;
+            flushQueue.add(connection);
+        }
+    }
+
+    // One write per connection with pending output; whatever the socket does not take waits for OP_WRITE
+    private void flush() {
+        for (Connection connection : flushQueue) {
+            connection.queued = false;
+            if (connection.overflowed) {
+                disconnect(connection);
+            }
+            if (!connection.key.isValid()) {
+                continue;
+            }
+            try {
+                write(connection);
+            } catch (IOException e) {
+                disconnect(connection);
+            }
+        }
+        flushQueue.clear();
+    }
+
+    private void write(Connection connection) throws IOException {
+        ByteBuffer out = connection.outbound;
+        out.flip();
+        connection.channel.write(out);
+        out.compact();
+        int interest = out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+        if (connection.key.interestOps() != interest) {
+            connection.key.interestOps(interest);
+        }
+    }
+
+    private void disconnect(Connection connection) {
+        if (!connection.key.isValid()) {
+            return;
+        }
+        closeQuietly(connection.key);
+        GameRoom room = connection.room;
+        if (room != null) {
+            room.leave(connection.actor);
+            List<Connection> roomMembers = members.get(room);
+            roomMembers.remove(connection);
+            if (roomMembers.isEmpty()) {
+                members.remove(room);
+                rooms.remove(room.id);
+            }
+        }
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        if (key == null) {
+            return;
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // Already gone
+        }
+    }
+
+    // Arguments: [port] [maze file]
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : NetProtocol.DEFAULT_PORT;
+        Maze maze = args.length > 1 ? Maze.load(Path.of(args[1])) : Maze.CLASSIC;
+        GameServer server = new GameServer(port, maze, GameSettings.DEFAULT);
+        server.start();
+        System.out.println("Pac-Man server listening on port " + server.port());
+        server.thread.join(); // Runs until the process is killed
+    }
+}
@@ -0,0 +1,6 @@
+package pacman;
+
+// Tunable rule parameters for a GameEngine
+public record GameSettings(int powerPelletDuration, int dotsForCherry) {
+    static final GameSettings DEFAULT = new GameSettings(200, 70); // 10 seconds (50ms * 200)
+}
@@ -0,0 +1,105 @@
+package pacman;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Parked daemon threads that help an engine with many ghosts decide where they go. Ghosts are
+// handed out in chunks through a shared counter and the calling thread takes chunks too. One
+// engine uses the pool at a time; an engine that finds it busy decides on its own thread, so
+// engines stepped side by side (VectorEnv, BatchRunner) never wait on each other.
+//
+// Sized by -Dpacman.ghostThreads, the number of processors by default.
+final class GhostDecisionPool {
+    private static final int CHUNK = 16; // Ghosts per claim
+    private static GhostDecisionPool shared;
+
+    private final Thread[] workers;
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    // Published to the workers by bumping generation
+    private GameEngine engine;
+    private int round;
+    private int rounds;
+    private int chunkCount;
+    private final AtomicInteger nextChunk = new AtomicInteger();
+    private final AtomicInteger pendingWorkers = new AtomicInteger();
+    private volatile int generation = 0;
+    private volatile Thread caller;
+
+    private GhostDecisionPool(int threads) {
+        workers = new Thread[Math.max(1, threads) - 1];
+        for (int i = 0; i < workers.length; i++) {
+            int participant = i + 1;
+            workers[i] = new Thread(() -> work(participant), "ghost-decisions-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    static synchronized GhostDecisionPool shared() {
+        if (shared == null) {
+            shared = new GhostDecisionPool(Integer.getInteger("pacman.ghostThreads",
+                    Runtime.getRuntime().availableProcessors()));
+        }
+        return shared;
+    }
+
+    // Threads deciding at once, the caller included
+    int participants() {
+        return workers.length + 1;
+    }
+
+    // Runs engine.decideGhosts() over all its ghosts for one round. False, having done nothing,
+    // when another engine has the pool.
+    boolean decide(GameEngine engine, int round, int rounds) {
+        if (!busy.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            this.engine = engine;
+            this.round = round;
+            this.rounds = rounds;
+            chunkCount = (engine.actorCount - 1 + CHUNK - 1) / CHUNK;
+            nextChunk.set(0);
+            caller = Thread.currentThread();
+            pendingWorkers.set(workers.length);
+            generation++;
+            for (Thread worker : workers) {
+                LockSupport.unpark(worker);
+            }
+            decideChunks(0);
+            while (pendingWorkers.get() > 0) {
+                LockSupport.park(this);
+            }
+        } finally {
+            this.engine = null;
+            busy.set(false);
+        }
+        return true;
+    }
+
+    private void decideChunks(int participant) {
+        int chunk;
+        while ((chunk = nextChunk.getAndIncrement()) < chunkCount) {
+            int from = 1 + chunk * CHUNK;
+            engine.decideGhosts(from, Math.min(from + CHUNK, engine.actorCount), round, rounds, participant);
+        }
+    }
+
+    private void work(int participant) {
+        int seen = 0;
+        while (true) {
+            int current = generation;
+            if (current == seen) {
+                LockSupport.park(this);
+                continue;
+            }
+            seen = current;
+            decideChunks(participant);
+            if (pendingWorkers.decrementAndGet() == 0) {
+                LockSupport.unpark(caller);
+            }
+        }
+    }
+}
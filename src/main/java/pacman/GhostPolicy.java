@@ -0,0 +1,32 @@
+package pacman;
+
+import java.util.Random;
+
+// Decides where a ghost (an actor index of the engine) heads. Directions are indexes into
+// GameEngine.ghostDirections, and openDirections is a bitmask of the ones the ghost can step in right now.
+public interface GhostPolicy {
+    // Called when the ghost reaches an intersection. Returns the new direction, or NO_DIRECTION to keep the current one
+    int atIntersection(GameEngine engine, int ghost, int openDirections, Random random);
+
+    // Called when the ghost has run into a wall. Returns the new direction, or NO_DIRECTION if it is boxed in
+    int afterCollision(GameEngine engine, int ghost, int openDirections, Random random);
+
+    // Whether decisions for different ghosts may be made on several threads at once, which holds
+    // when a policy only reads the engine and draws from the random it is handed
+    default boolean parallelSafe() {
+        return false;
+    }
+
+    // Short text form that fromSpec() turns back into an equivalent policy, stored in replays
+    String spec();
+
+    static GhostPolicy fromSpec(String spec) {
+        if (spec.equals("chase")) {
+            return new ChaseScatterGhostPolicy();
+        }
+        if (spec.startsWith("random:")) {
+            return new RandomGhostPolicy(Integer.parseInt(spec.substring("random:".length())));
+        }
+        throw new IllegalArgumentException("Unknown ghost policy: " + spec);
+    }
+}
@@ -0,0 +1,271 @@
+package pacman;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+// The score line, high score, level, optional FPS counter and the game over screen. Fonts, their
+// metrics and the fixed strings' glyph layouts are built once. Each piece of text is rasterized
+// into its own small image only when the value it shows changes, so a frame with nothing new
+// draws a few cached images and allocates nothing. Used on the event dispatch thread only, with
+// the engine copy it paints from; the loop thread hands finished scores over with invokeLater.
+class Hud {
+    static final int HIGH_SCORES = 5;
+    private static final int MARGIN = GameEngine.TILE_SIZE / 2;
+
+    // Sized for 32 pixel tiles and scaled with them
+    private final Font font = new Font("Comic Sans MS", Font.PLAIN, scaled(18));
+    private final Font titleFont = new Font("Comic Sans MS", Font.PLAIN, scaled(75));
+    private final Font messageFont = new Font("Comic Sans MS", Font.PLAIN, scaled(25));
+    private final FontRenderContext renderContext = new FontRenderContext(null, false, false);
+    private final FontMetrics metrics;
+    private final GlyphVector gameOverGlyphs;
+    private final GlyphVector restartGlyphs;
+    private final GlyphVector highScoresGlyphs;
+
+    private final GraphicsConfiguration graphicsConfiguration; // Null when headless
+    private final Label scoreLabel = new Label(Color.WHITE);
+    private final Label highScoreLabel = new Label(Color.WHITE);
+    private final Label levelLabel = new Label(Color.WHITE);
+    private final Label fpsLabel = new Label(Color.GREEN);
+
+    // Best scores, highest first: this session's and those loaded from the leaderboard
+    private final int[] highScores = new int[HIGH_SCORES];
+    private int highScoreCount = 0;
+    private int highScoreVersion = 0;
+
+    // The whole game over screen, redrawn when the score, the table or the board size changes
+    private BufferedImage gameOverScreen;
+    private int gameOverScore = -1;
+    private int gameOverVersion = -1;
+
+    // Frames counted by frameRendered() over the current second
+    boolean showFps = Boolean.getBoolean("pacman.fps"); // -Dpacman.fps=true
+    private int fps = 0;
+    private int framesThisSecond = 0;
+    private long secondStart = 0;
+
+    Hud(GraphicsConfiguration graphicsConfiguration) {
+        this.graphicsConfiguration = graphicsConfiguration;
+        BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scratch.createGraphics();
+        metrics = g.getFontMetrics(font);
+        g.dispose();
+        gameOverGlyphs = titleFont.createGlyphVector(renderContext, "Game over :(");
+        restartGlyphs = messageFont.createGlyphVector(renderContext, "Press Any Key to Restart");
+        highScoresGlyphs = font.createGlyphVector(renderContext, "High scores");
+    }
+
+    // Adds a finished game's score to the table
+    void recordScore(int score) {
+        int position = highScoreCount;
+        while (position > 0 && highScores[position - 1] < score) {
+            position--;
+        }
+        if (position == HIGH_SCORES) {
+            return;
+        }
+        int moved = Math.min(highScoreCount, HIGH_SCORES - 1) - position;
+        System.arraycopy(highScores, position, highScores, position + 1, moved);
+        highScores[position] = score;
+        highScoreCount = Math.min(highScoreCount + 1, HIGH_SCORES);
+        highScoreVersion++;
+    }
+
+    int[] highScores() {
+        return Arrays.copyOf(highScores, highScoreCount);
+    }
+
+    // Counts a rendered frame; true when the FPS counter has a new value to show
+    boolean frameRendered(long now) {
+        framesThisSecond++;
+        long elapsed = now - secondStart;
+        if (elapsed < 1_000_000_000L) {
+            return false;
+        }
+        int previous = fps;
+        fps = secondStart == 0 ? 0 : (int) (framesThisSecond * 1_000_000_000L / elapsed);
+        framesThisSecond = 0;
+        secondStart = now;
+        return showFps && fps != previous;
+    }
+
+    // Whether the score line would look different from when it was last drawn
+    boolean changed(GameEngine engine) {
+        return scoreLabel.value != scoreKey(engine)
+                || highScoreLabel.value != highScore(engine)
+                || levelLabel.value != engine.level;
+    }
+
+    // The top row, where the score line goes
+    Rectangle bounds(GameEngine engine) {
+        return new Rectangle(0, 0, engine.BOARD_WIDTH, GameEngine.TILE_SIZE);
+    }
+
+    // The bottom right corner, where the FPS counter goes
+    Rectangle fpsBounds(GameEngine engine) {
+        int width = metrics.charWidth('0') * 8;
+        return new Rectangle(engine.BOARD_WIDTH - width - MARGIN, engine.BOARD_HEIGHT - GameEngine.TILE_SIZE,
+                width + MARGIN, GameEngine.TILE_SIZE);
+    }
+
+    // clip is g's clip bounds, or null to draw everything
+    void draw(Graphics g, Rectangle clip, GameEngine engine) {
+        int baseline = GameEngine.TILE_SIZE / 2;
+        if (clip == null || clip.intersects(0, 0, engine.BOARD_WIDTH, GameEngine.TILE_SIZE)) {
+            long scoreKey = scoreKey(engine);
+            if (scoreLabel.value != scoreKey) {
+                scoreLabel.set(scoreKey).append('x').append(engine.lives).append(" Score: ").append(engine.score);
+            }
+            int highScore = highScore(engine);
+            if (highScoreLabel.value != highScore) {
+                highScoreLabel.set(highScore).append("High: ").append(highScore);
+            }
+            if (levelLabel.value != engine.level) {
+                levelLabel.set(engine.level).append("Level ").append(engine.level);
+            }
+            scoreLabel.draw(g, MARGIN, baseline, 0f);
+            highScoreLabel.draw(g, engine.BOARD_WIDTH / 2, baseline, 0.5f);
+            levelLabel.draw(g, engine.BOARD_WIDTH - MARGIN, baseline, 1f);
+        }
+
+        if (showFps) {
+            if (fpsLabel.value != fps) {
+                fpsLabel.set(fps).append(fps).append(" fps");
+            }
+            fpsLabel.draw(g, engine.BOARD_WIDTH - MARGIN, engine.BOARD_HEIGHT - baseline, 1f);
+        }
+    }
+
+    void drawGameOver(Graphics g, GameEngine engine) {
+        if (gameOverScreen == null
+                || gameOverScreen.getWidth() != engine.BOARD_WIDTH
+                || gameOverScreen.getHeight() != engine.BOARD_HEIGHT
+                || gameOverScore != engine.score
+                || gameOverVersion != highScoreVersion) {
+            drawGameOverScreen(engine);
+        }
+        g.drawImage(gameOverScreen, 0, 0, null);
+    }
+
+    private void drawGameOverScreen(GameEngine engine) {
+        if (gameOverScreen == null
+                || gameOverScreen.getWidth() != engine.BOARD_WIDTH
+                || gameOverScreen.getHeight() != engine.BOARD_HEIGHT) {
+            gameOverScreen = createImage(engine.BOARD_WIDTH, engine.BOARD_HEIGHT, Transparency.OPAQUE);
+        }
+        Graphics2D g = gameOverScreen.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, engine.BOARD_WIDTH, engine.BOARD_HEIGHT);
+
+        g.setColor(Color.RED);
+        g.setFont(font);
+        g.drawString("Score: " + engine.score, MARGIN, MARGIN);
+        int middle = engine.BOARD_HEIGHT / 2;
+        drawCentered(g, gameOverGlyphs, engine.BOARD_WIDTH, middle);
+        drawCentered(g, restartGlyphs, engine.BOARD_WIDTH, middle + scaled(50));
+
+        if (highScoreCount > 0) {
+            g.setColor(Color.WHITE);
+            int lineHeight = metrics.getHeight();
+            int y = middle + scaled(100);
+            drawCentered(g, highScoresGlyphs, engine.BOARD_WIDTH, y);
+            for (int i = 0; i < highScoreCount; i++) {
+                y += lineHeight;
+                String line = (i + 1) + ".  " + highScores[i];
+                g.setColor(highScores[i] == engine.score ? Color.YELLOW : Color.WHITE);
+                g.drawString(line, (engine.BOARD_WIDTH - metrics.stringWidth(line)) / 2, y);
+            }
+        }
+        g.dispose();
+        gameOverScore = engine.score;
+        gameOverVersion = highScoreVersion;
+    }
+
+    // A length laid out for 32 pixel tiles at the tile size in use
+    private static int scaled(int pixels) {
+        return pixels * GameEngine.TILE_SIZE / 32;
+    }
+
+    private static void drawCentered(Graphics2D g, GlyphVector glyphs, int width, int baseline) {
+        float x = (float) (width - glyphs.getLogicalBounds().getWidth()) / 2;
+        g.drawGlyphVector(glyphs, x, baseline);
+    }
+
+    private int highScore(GameEngine engine) {
+        return Math.max(engine.score, highScoreCount > 0 ? highScores[0] : 0);
+    }
+
+    private static long scoreKey(GameEngine engine) {
+        return (long) engine.lives << 32 | (engine.score & 0xFFFFFFFFL);
+    }
+
+    // Glyphs are drawn without antialiasing, so bitmask transparency keeps them exact and lets
+    // Java2D cache the image in video memory
+    private BufferedImage createImage(int width, int height, int transparency) {
+        if (graphicsConfiguration != null) {
+            return graphicsConfiguration.createCompatibleImage(width, height, transparency);
+        }
+        return new BufferedImage(width, height,
+                transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+    }
+
+    // One line of text in the HUD font and the image it was last rasterized into. The text is
+    // built in a reused StringBuilder and drawn from a reused char array; the image only grows.
+    private final class Label {
+        private final Color color;
+        private final StringBuilder text = new StringBuilder(16);
+        private char[] chars = new char[16];
+        private BufferedImage image;
+        private boolean dirty = false;
+        private int textWidth;
+        long value = Long.MIN_VALUE; // What the text shows
+
+        Label(Color color) {
+            this.color = color;
+        }
+
+        // Starts new text for a value; the image is redrawn on the next draw()
+        StringBuilder set(long value) {
+            this.value = value;
+            text.setLength(0);
+            dirty = true;
+            return text;
+        }
+
+        // Draws the text with align (0 left, 0.5 centre, 1 right) of its width before anchorX
+        void draw(Graphics g, int anchorX, int baseline, float align) {
+            if (dirty) {
+                rasterize();
+            }
+            if (image != null) {
+                int x = anchorX - Math.round(textWidth * align);
+                g.drawImage(image, x, baseline - metrics.getAscent(), null);
+            }
+        }
+
+        private void rasterize() {
+            dirty = false;
+            int length = text.length();
+            if (chars.length < length) {
+                chars = new char[length * 2];
+            }
+            text.getChars(0, length, chars, 0);
+            textWidth = metrics.charsWidth(chars, 0, length);
+            int height = metrics.getHeight();
+            if (image == null || image.getWidth() < textWidth || image.getHeight() < height) {
+                image = createImage(Math.max(textWidth, 1) + metrics.getMaxAdvance(), height, Transparency.BITMASK);
+            }
+            Graphics2D g = image.createGraphics();
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            g.setComposite(AlphaComposite.SrcOver);
+            g.setColor(color);
+            g.setFont(font);
+            g.drawChars(chars, 0, length, 0, metrics.getAscent());
+            g.dispose();
+        }
+    }
+}
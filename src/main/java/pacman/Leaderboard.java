@@ -0,0 +1,368 @@
+package pacman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+// Finished games on disk, best first. The file is an append-only log of checksummed records;
+// opening it scans the log once and keeps the best capacity games in a sorted in-memory index.
+// record() only updates the index and queues the game, so the game loop never waits on the disk.
+// A writer thread appends the queue through a buffer, and every record queued while one fsync
+// runs is covered by the next one (group commit). Once the log holds far more records than the
+// index, it is rewritten with just the indexed ones.
+//
+// File layout, big-endian:
+//   int magic "PMLB", byte version
+//   records: int length, int CRC32 of the rest, long sequence, long time (epoch millis),
+//            int score, int level, long ticks, long seed, UTF replay file name, empty for none
+// A record torn by a crash fails its length or checksum; it and anything after it are cut off
+// when the file is opened again. One process writes a file at a time.
+public class Leaderboard implements AutoCloseable {
+    static final int MAGIC = 0x504D4C42; // "PMLB"
+    static final byte VERSION = 1;
+    static final int DEFAULT_CAPACITY = 100;
+
+    private static final int HEADER = 4 + 1;
+    private static final int FIXED_RECORD = 4 + 4 + 8 + 8 + 4 + 4 + 8 + 8 + 2;
+    private static final int MAX_RECORD = FIXED_RECORD + 0xFFFF;
+    private static final int COMPACT_FACTOR = 64; // Log records per indexed one before compacting
+    private static final byte[] NO_REPLAY = new byte[0];
+    private static final Entry CLOSE = new Entry(-1, 0, 0, 0, 0, 0, null);
+
+    public record Entry(long sequence, long time, int score, int level, long ticks, long seed, String replay) {}
+
+    private final Path path;
+    private final int capacity;
+
+    // Best first, ties to the earlier game. Guarded by itself, as is queueing, so nothing gets
+    // queued after CLOSE.
+    private final Entry[] top;
+    private int topCount = 0;
+    private long nextSequence;
+    private boolean closed = false;
+
+    private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+
+    // Writer thread only
+    private FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+    private final CRC32 crc = new CRC32();
+    private long logRecords; // Records in the file
+    private long writtenSequence; // Highest sequence in the file
+    private boolean failed = false;
+
+    // Guarded by this: highest sequence known to be on disk
+    private long syncedSequence;
+
+    private Leaderboard(Path path, int capacity) {
+        this.path = path;
+        this.capacity = capacity;
+        this.top = new Entry[capacity];
+        writer = new Thread(this::write, "leaderboard-writer");
+        writer.setDaemon(true);
+    }
+
+    // Opens the file, creating it if missing, and rebuilds the index from it
+    public static Leaderboard open(Path path, int capacity) throws IOException {
+        Leaderboard leaderboard = new Leaderboard(path, Math.max(1, capacity));
+        leaderboard.load();
+        leaderboard.writer.start();
+        return leaderboard;
+    }
+
+    public static Leaderboard open(Path path) throws IOException {
+        return open(path, DEFAULT_CAPACITY);
+    }
+
+    // Adds a finished game, replay being the file name of its replay or null. Never blocks.
+    // Returns null, keeping nothing, once closed.
+    public Entry record(GameEngine engine, String replay) {
+        return record(engine.score, engine.level, engine.tickCount, engine.seed, replay);
+    }
+
+    public Entry record(int score, int level, long ticks, long seed, String replay) {
+        synchronized (top) {
+            if (closed) {
+                return null;
+            }
+            Entry entry = new Entry(nextSequence++, System.currentTimeMillis(), score, level, ticks, seed, replay);
+            insert(entry);
+            queue.add(entry);
+            return entry;
+        }
+    }
+
+    // The best count games, best first
+    public List<Entry> top(int count) {
+        synchronized (top) {
+            return List.of(Arrays.copyOf(top, Math.min(count, topCount)));
+        }
+    }
+
+    // Blocks until every game recorded so far is on disk; false if writing failed
+    public boolean flush() throws InterruptedException {
+        long sequence;
+        synchronized (top) {
+            sequence = nextSequence - 1;
+        }
+        synchronized (this) {
+            while (syncedSequence < sequence && !failed && writer.isAlive()) {
+                wait(100);
+            }
+            return syncedSequence >= sequence;
+        }
+    }
+
+    // Writes out what is queued and closes the file
+    @Override
+    public void close() {
+        synchronized (top) {
+            closed = true;
+            queue.add(CLOSE);
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void insert(Entry entry) {
+        int position = topCount;
+        while (position > 0 && top[position - 1].score() < entry.score()) {
+            position--;
+        }
+        if (position == capacity) {
+            return;
+        }
+        int moved = Math.min(topCount, capacity - 1) - position;
+        System.arraycopy(top, position, top, position + 1, moved);
+        top[position] = entry;
+        topCount = Math.min(topCount + 1, capacity);
+    }
+
+    // Reads every intact record in one sequential pass, cuts off a torn tail and leaves the
+    // channel positioned for appending
+    private void load() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                writeHeader(channel);
+            } else {
+                scan();
+            }
+            channel.position(channel.size());
+            nextSequence = writtenSequence + 1;
+            syncedSequence = writtenSequence;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void scan() throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(1 << 20);
+        channel.read(in, 0);
+        in.flip();
+        if (in.remaining() < HEADER || in.getInt() != MAGIC) {
+            throw new IOException("Not a leaderboard file: " + path);
+        }
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported leaderboard version " + version);
+        }
+        long offset = HEADER;
+        while (true) {
+            if (in.remaining() < 4 || in.remaining() < in.getInt(in.position())) {
+                // Refill from the current record on
+                in.compact();
+                int read = channel.read(in, offset + in.position());
+                in.flip();
+                if (read <= 0 && (in.remaining() < 4 || in.remaining() < in.getInt(in.position()))) {
+                    break;
+                }
+                continue;
+            }
+            int start = in.position();
+            int length = in.getInt(start);
+            if (length < FIXED_RECORD || length > MAX_RECORD) {
+                break;
+            }
+            crc.reset();
+            crc.update(in.array(), start + 8, length - 8);
+            if ((int) crc.getValue() != in.getInt(start + 4)) {
+                break;
+            }
+            // Only games that make the index are decoded
+            int score = in.getInt(start + 8 + 16);
+            if (topCount < capacity || score > top[capacity - 1].score()) {
+                Entry entry = decode(in, start + 8, length);
+                if (entry == null) {
+                    break;
+                }
+                insert(entry);
+            }
+            writtenSequence = Math.max(writtenSequence, in.getLong(start + 8));
+            logRecords++;
+            in.position(start + length);
+            offset += length;
+        }
+        if (offset < channel.size()) {
+            System.err.println("Leaderboard " + path + ": dropping " + (channel.size() - offset) + " torn bytes");
+            channel.truncate(offset);
+        }
+    }
+
+    private static Entry decode(ByteBuffer in, int at, int length) {
+        ByteBuffer record = in.slice(at, length - 8);
+        long sequence = record.getLong();
+        long time = record.getLong();
+        int score = record.getInt();
+        int level = record.getInt();
+        long ticks = record.getLong();
+        long seed = record.getLong();
+        int replayLength = record.getShort() & 0xFFFF;
+        if (replayLength != record.remaining()) {
+            return null;
+        }
+        String replay = null;
+        if (replayLength > 0) {
+            byte[] bytes = new byte[replayLength];
+            record.get(bytes);
+            replay = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new Entry(sequence, time, score, level, ticks, seed, replay);
+    }
+
+    private void write() {
+        List<Entry> batch = new ArrayList<>();
+        boolean closing = false;
+        while (!closing) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch);
+            int close = batch.indexOf(CLOSE);
+            if (close >= 0) {
+                batch.subList(close, batch.size()).clear(); // Only a second close() queues anything after it
+                closing = true;
+            }
+            if (!failed && !batch.isEmpty()) {
+                try {
+                    append(batch);
+                    if (logRecords > (long) capacity * COMPACT_FACTOR) {
+                        compact();
+                    }
+                } catch (IOException e) {
+                    System.err.println("Could not write leaderboard " + path + ": " + e);
+                    failed = true;
+                }
+            }
+            batch.clear();
+            synchronized (this) {
+                syncedSequence = writtenSequence;
+                notifyAll();
+            }
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Could not close leaderboard " + path + ": " + e);
+        }
+    }
+
+    // Appends a batch through the buffer with a single fsync at the end
+    private void append(List<Entry> batch) throws IOException {
+        for (Entry entry : batch) {
+            put(entry, channel);
+        }
+        drain(channel);
+        channel.force(false);
+        logRecords += batch.size();
+        writtenSequence = batch.get(batch.size() - 1).sequence();
+    }
+
+    // Rewrites the file with only the indexed games that are already on disk, then swaps it in
+    private void compact() throws IOException {
+        Entry[] kept;
+        synchronized (top) {
+            kept = Arrays.copyOf(top, topCount);
+        }
+        Path temporary = path.resolveSibling(path.getFileName() + ".compact");
+        long records = 0;
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(out);
+            for (Entry entry : kept) {
+                if (entry.sequence() <= writtenSequence) {
+                    put(entry, out);
+                    records++;
+                }
+            }
+            drain(out);
+            out.force(false);
+        }
+        channel.close();
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        logRecords = records;
+    }
+
+    // Encodes a record into the buffer, first draining it to out when full
+    private void put(Entry entry, FileChannel out) throws IOException {
+        byte[] replay = entry.replay() == null ? NO_REPLAY : entry.replay().getBytes(StandardCharsets.UTF_8);
+        int length = FIXED_RECORD + Math.min(replay.length, 0xFFFF);
+        if (buffer.remaining() < length) {
+            drain(out);
+        }
+        int start = buffer.position();
+        buffer.putInt(length).putInt(0);
+        buffer.putLong(entry.sequence()).putLong(entry.time()).putInt(entry.score()).putInt(entry.level());
+        buffer.putLong(entry.ticks()).putLong(entry.seed());
+        buffer.putShort((short) (length - FIXED_RECORD)).put(replay, 0, length - FIXED_RECORD);
+        crc.reset();
+        crc.update(buffer.slice(start + 8, length - 8));
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    private void drain(FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void writeHeader(FileChannel out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).put(VERSION).flip();
+        while (header.hasRemaining()) {
+            out.write(header);
+        }
+    }
+
+    // Arguments: leaderboard file, optional count. Prints the best games.
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        try (Leaderboard leaderboard = open(Path.of(args[0]), Math.max(count, DEFAULT_CAPACITY))) {
+            int rank = 1;
+            for (Entry entry : leaderboard.top(count)) {
+                System.out.printf("%3d. %8d  level %2d  %tF %<tR  %s%n", rank++, entry.score(), entry.level(),
+                        entry.time(), entry.replay() == null ? "" : entry.replay());
+            }
+        }
+    }
+}
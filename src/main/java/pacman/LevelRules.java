@@ -0,0 +1,48 @@
+package pacman;
+
+// The rules of one level. Speeds are percentages of the base speed (a quarter tile per tick): an
+// actor at 125 moves 5/16 of a tile every tick, in GameEngine's fixed-point units with any
+// fraction carried over to the next tick. frightenedPercent scales GameSettings.powerPelletDuration;
+// at 0 power pellets still score but no longer frighten the ghosts.
+public record LevelRules(int pacmanSpeed, int pacmanFrightenedSpeed, int ghostSpeed, int ghostFrightenedSpeed,
+                         int frightenedPercent, Fruit fruit) {
+    static final int BASE_SPEED = 100;
+
+    // After the arcade game: speeds and frightened times from its tables, scaled so level 1 pacman
+    // keeps the base speed. Levels past the end repeat the last row.
+    private static final LevelRules[] TABLE = {
+            //             pacman  frightened  ghost  frightened  frightened%  fruit
+            new LevelRules(100, 112, 94, 62, 100, Fruit.CHERRY),
+            new LevelRules(112, 119, 106, 69, 83, Fruit.STRAWBERRY),
+            new LevelRules(112, 119, 106, 69, 67, Fruit.ORANGE),
+            new LevelRules(112, 119, 106, 69, 50, Fruit.ORANGE),
+            new LevelRules(125, 125, 119, 75, 33, Fruit.APPLE),
+            new LevelRules(125, 125, 119, 75, 83, Fruit.APPLE),
+            new LevelRules(125, 125, 119, 75, 33, Fruit.MELON),
+            new LevelRules(125, 125, 119, 75, 33, Fruit.MELON),
+            new LevelRules(125, 125, 119, 75, 17, Fruit.GALAXIAN),
+            new LevelRules(125, 125, 119, 75, 83, Fruit.GALAXIAN),
+            new LevelRules(125, 125, 119, 75, 33, Fruit.BELL),
+            new LevelRules(125, 125, 119, 75, 17, Fruit.BELL),
+            new LevelRules(125, 125, 119, 75, 17, Fruit.KEY),
+            new LevelRules(125, 125, 119, 75, 50, Fruit.KEY),
+            new LevelRules(125, 125, 119, 75, 17, Fruit.KEY),
+            new LevelRules(125, 125, 119, 75, 17, Fruit.KEY),
+            new LevelRules(125, 125, 119, 75, 0, Fruit.KEY),
+            new LevelRules(125, 125, 119, 75, 17, Fruit.KEY),
+            new LevelRules(125, 125, 119, 75, 0, Fruit.KEY),
+            new LevelRules(125, 125, 119, 75, 0, Fruit.KEY),
+            new LevelRules(112, 112, 119, 75, 0, Fruit.KEY),
+    };
+
+    // Points for each ghost eaten on one power pellet; the fifth and later score like the fourth
+    static final int[] GHOST_POINTS = {200, 400, 800, 1600};
+
+    static LevelRules forLevel(int level) {
+        return TABLE[Math.min(Math.max(level, 1), TABLE.length) - 1];
+    }
+
+    int frightenedTicks(GameSettings settings) {
+        return settings.powerPelletDuration() * frightenedPercent / 100;
+    }
+}
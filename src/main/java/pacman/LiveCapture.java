@@ -0,0 +1,90 @@
+package pacman;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+// Records a game being played into a FrameExporter without holding up its tick. The tick only
+// copies the engine state into a free buffer; a capture thread restores each copy into a shadow
+// engine and renders it there. When capture falls behind and every buffer is busy, the tick's
+// frame is dropped instead of waiting. The capture thread polls rather than being woken, so
+// the tick never hands the CPU over to it mid-tick.
+class LiveCapture implements Runnable {
+    private static final int BUFFERS = 16;
+    private static final byte[] END = new byte[0];
+    private static final long POLL_NANOS = GameLoop.TICK_NANOS / 4;
+
+    private final FrameExporter exporter;
+    private final GameEngine shadow;
+    private final GameRenderer renderer = new GameRenderer(null);
+    private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(BUFFERS);
+    private final BlockingQueue<byte[]> captured = new ArrayBlockingQueue<>(BUFFERS + 1); // Room for END
+    private final Thread thread;
+    private boolean finished = false; // Tick side only
+    private long dropped = 0; // Tick side only
+
+    LiveCapture(GameEngine engine, FrameExporter exporter) {
+        this.exporter = exporter;
+        shadow = new GameEngine(engine.maze, engine.seed, engine.settings, GhostPolicy.fromSpec(engine.ghostPolicy.spec()));
+        for (int i = 0; i < BUFFERS; i++) {
+            free.add(new byte[engine.stateSize()]);
+        }
+        thread = new Thread(this, "live-capture");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Called after every tick while holding the engine's monitor
+    void offer(GameEngine engine) {
+        if (finished) {
+            return;
+        }
+        byte[] state = free.poll();
+        if (state == null) {
+            dropped++;
+            return;
+        }
+        engine.writeState(ByteBuffer.wrap(state));
+        captured.add(state);
+    }
+
+    // Stops capturing; the capture thread writes out what it has and closes the export
+    void finish() {
+        if (!finished) {
+            finished = true;
+            captured.add(END);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            renderer.spritesLoaded().join();
+            while (true) {
+                byte[] state = captured.poll();
+                if (state == null) {
+                    LockSupport.parkNanos(POLL_NANOS);
+                    continue;
+                }
+                if (state == END) {
+                    break;
+                }
+                shadow.readState(ByteBuffer.wrap(state));
+                free.add(state);
+                BufferedImage frame = exporter.acquire();
+                FrameExporter.draw(renderer, shadow, frame);
+                exporter.submit(frame);
+            }
+            exporter.close();
+            System.out.println("Captured " + exporter.frameCount() + " frames to " + exporter.output()
+                    + (dropped > 0 ? ", dropped " + dropped : ""));
+        } catch (IOException e) {
+            System.err.println("Capture failed: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
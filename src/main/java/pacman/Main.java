@@ -0,0 +1,12 @@
+package pacman;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class Main {
+    // Optional argument: a maze file (text or binary) to play instead of the classic maze
+    public static void main(String[] args) throws IOException {
+        Maze maze = args.length > 0 ? Maze.load(Path.of(args[0])) : Maze.CLASSIC;
+        new PacManFrame(maze);
+    }
+}
@@ -0,0 +1,551 @@
+package pacman;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// A parsed and validated maze. GameEngine.loadMap() copies these arrays instead of re-reading
+// the tile map, so starting a level costs a few array copies however big the maze is.
+//
+// Text files use the tile map legend, one row per line. Lines starting with '#' hold metadata
+// ("# name classic", "# cherry <column> <row>", "# tunnels <row> <row> ...") or comments.
+//
+// Binary files, big-endian:
+//   int magic "PMMZ", byte version, UTF name, short rows, short columns
+//   int cherry tile, short tunnel count, tunnel count x short row
+//   rows * columns tile codes (index in LEGEND), two per byte, high nibble first
+public final class Maze {
+    static final int MAGIC = 0x504D4D5A; // "PMMZ"
+    static final byte VERSION = 1;
+    static final String LEGEND = "XO @Pbopr";
+
+    static final Maze CLASSIC = new Maze("classic", GameEngine.DEFAULT_TILE_MAP, 11 * 19 + 9, new int[] {9});
+
+    // The most recently used mazes loaded from files, least recent first. Guarded by itself.
+    private static final int CACHE_SIZE = 32;
+    private static final Map<Path, Cached> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Cached> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private record Cached(FileTime modified, long size, Maze maze) {}
+
+    final String name;
+    final int rows;
+    final int columns;
+    private final byte[] codes; // LEGEND index per tile, row by row
+
+    final byte[] walls; // 1 for wall tiles
+    final long[] foodBits;
+    final long[] pelletBits;
+    final int foodCount;
+    final int pelletCount;
+
+    // Index 0 is pacman, the ghosts follow in row-major order
+    final char[] actorKinds;
+    final int[] actorTiles;
+    // Per actor: the red ghost nearest its start, whose start is the door its house is left
+    // through, or -1 when there is none (always for pacman)
+    final int[] houseLeaders;
+    final int[] houseDoors; // Per actor: the leader's start tile, or the actor's own without a leader
+    final int[] houseOrder; // Per actor: ghosts before it in tile map order that share its door
+
+    final int cherryTile;
+    final int[] tunnelRows; // Rows whose left and right edges connect
+
+    // Built with the maze, so no tick ever waits for them
+    private final NavGraph navGraph;
+    private final int[] doorDistances;
+
+    public Maze(String name, String[] tileMap) {
+        this(name, tileMap, -1, null);
+    }
+
+    // A cherry tile of -1 and null tunnel rows pick the defaults described at defaultCherryTile()
+    // and defaultTunnelRows()
+    public Maze(String name, String[] tileMap, int cherryTile, int[] tunnelRows) {
+        this(name, tileMap.length, tileMap.length == 0 ? 0 : tileMap[0].length(),
+                encode(name, tileMap), cherryTile, tunnelRows);
+    }
+
+    // Takes ownership of codes, LEGEND indexes row by row
+    Maze(String name, int rows, int columns, byte[] codes, int cherryTile, int[] tunnelRows) {
+        if (rows == 0 || columns == 0) {
+            throw new IllegalArgumentException("Maze " + name + " is empty");
+        }
+        if ((long) rows * columns != codes.length) {
+            throw new IllegalArgumentException("Maze " + name + " has " + codes.length + " tiles, not "
+                    + columns + "x" + rows);
+        }
+        if (tunnelRows != null) {
+            for (int row : tunnelRows) {
+                if (row < 0 || row >= rows) {
+                    throw new IllegalArgumentException("Maze " + name + " tunnel row " + row + " is outside the maze");
+                }
+            }
+        }
+        this.name = name;
+        this.rows = rows;
+        this.columns = columns;
+        this.codes = codes;
+
+        int tileCount = rows * columns;
+        walls = new byte[tileCount];
+        foodBits = new long[(tileCount + 63) >> 6];
+        pelletBits = new long[(tileCount + 63) >> 6];
+        int food = 0;
+        int pellets = 0;
+        int actors = 1;
+        int pacmanTile = -1;
+        for (int i = 0; i < tileCount; i++) {
+            switch (LEGEND.charAt(codes[i])) {
+                case 'X' -> walls[i] = 1;
+                case ' ' -> {
+                    foodBits[i >> 6] |= 1L << i;
+                    food++;
+                }
+                case '@' -> {
+                    pelletBits[i >> 6] |= 1L << i;
+                    pellets++;
+                }
+                case 'P' -> {
+                    if (pacmanTile >= 0) {
+                        throw new IllegalArgumentException("Maze " + name + " has more than one pacman");
+                    }
+                    pacmanTile = i;
+                }
+                case 'b', 'o', 'p', 'r' -> actors++;
+                default -> {}
+            }
+        }
+        if (pacmanTile < 0) {
+            throw new IllegalArgumentException("Maze " + name + " has no pacman");
+        }
+        foodCount = food;
+        pelletCount = pellets;
+
+        actorKinds = new char[actors];
+        actorTiles = new int[actors];
+        actorKinds[GameEngine.PACMAN] = 'P';
+        actorTiles[GameEngine.PACMAN] = pacmanTile;
+        int ghost = 1;
+        for (int i = 0; i < tileCount; i++) {
+            char kind = LEGEND.charAt(codes[i]);
+            if (kind == 'b' || kind == 'o' || kind == 'p' || kind == 'r') {
+                actorKinds[ghost] = kind;
+                actorTiles[ghost++] = i;
+            }
+        }
+
+        houseLeaders = new int[actors];
+        houseDoors = new int[actors];
+        houseOrder = new int[actors];
+        findHouses();
+
+        // The defaults walk the maze, so everything they depend on is checked above
+        this.tunnelRows = tunnelRows != null ? tunnelRows.clone() : defaultTunnelRows();
+        this.cherryTile = cherryTile >= 0 ? cherryTile : defaultCherryTile();
+        validate();
+        navGraph = new NavGraph(walls, rows, columns, (byte) 1, this.tunnelRows);
+        doorDistances = reachableFrom(Arrays.copyOfRange(houseDoors, 1, houseDoors.length));
+    }
+
+    public int actorCount() {
+        return actorKinds.length;
+    }
+
+    // Shared by every engine playing this maze
+    NavGraph navGraph() {
+        return navGraph;
+    }
+
+    // Step counts from every tile to the nearest house door
+    int[] doorDistances() {
+        return doorDistances;
+    }
+
+    // Pairs every ghost with the nearest red one by Manhattan distance, then counts the ghosts
+    // queued at each door before it
+    private void findHouses() {
+        Arrays.fill(houseLeaders, -1);
+        houseDoors[GameEngine.PACMAN] = actorTiles[GameEngine.PACMAN];
+        Map<Integer, Integer> queued = new HashMap<>();
+        for (int ghost = 1; ghost < actorTiles.length; ghost++) {
+            int row = actorTiles[ghost] / columns;
+            int column = actorTiles[ghost] % columns;
+            int bestDistance = Integer.MAX_VALUE;
+            for (int red = 1; red < actorTiles.length; red++) {
+                if (actorKinds[red] != 'r') {
+                    continue;
+                }
+                int distance = Math.abs(actorTiles[red] / columns - row) + Math.abs(actorTiles[red] % columns - column);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    houseLeaders[ghost] = red;
+                }
+            }
+            houseDoors[ghost] = houseLeaders[ghost] >= 0 ? actorTiles[houseLeaders[ghost]] : actorTiles[ghost];
+            houseOrder[ghost] = queued.merge(houseDoors[ghost], 1, Integer::sum) - 1;
+        }
+    }
+
+    // The maze in tile map form, one string per row
+    public String[] tileMap() {
+        String[] tileMap = new String[rows];
+        char[] row = new char[columns];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                row[c] = LEGEND.charAt(codes[r * columns + c]);
+            }
+            tileMap[r] = new String(row);
+        }
+        return tileMap;
+    }
+
+    // Loads a text or binary maze file, going by its first bytes. Parsed mazes are cached until
+    // the file changes, so switching back and forth between levels never parses twice; only the
+    // CACHE_SIZE most recently used are kept.
+    public static Maze load(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        FileTime modified = Files.getLastModifiedTime(key);
+        long size = Files.size(key);
+        Cached cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null && cached.modified.equals(modified) && cached.size == size) {
+            return cached.maze;
+        }
+
+        Maze maze;
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(key, StandardOpenOption.READ)) {
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the whole file is in
+            }
+            buffer.flip();
+        }
+        try {
+            if (size >= 4 && buffer.getInt(0) == MAGIC) {
+                maze = read(buffer);
+            } else {
+                String name = key.getFileName().toString().replaceFirst("\\.[^.]*$", "");
+                maze = readText(name, new ByteArrayInputStream(buffer.array(), 0, buffer.limit()));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException(path + ": " + e.getMessage(), e); // Failed validation
+        }
+        synchronized (cache) {
+            cache.put(key, new Cached(modified, size, maze));
+        }
+        return maze;
+    }
+
+    // Reads the text format; name metadata in the file overrides the given name
+    public static Maze readText(String name, BufferedReader reader) throws IOException {
+        List<String> tileMap = new ArrayList<>();
+        boolean cherry = false;
+        int cherryColumn = -1;
+        int cherryRow = -1;
+        int[] tunnelRows = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.startsWith("#")) {
+                tileMap.add(line);
+                continue;
+            }
+            String[] fields = line.substring(1).trim().split("\\s+");
+            try {
+                switch (fields[0]) {
+                    case "name" -> name = fields[1];
+                    case "cherry" -> {
+                        cherry = true;
+                        cherryColumn = Integer.parseInt(fields[1]);
+                        cherryRow = Integer.parseInt(fields[2]);
+                    }
+                    case "tunnels" -> {
+                        tunnelRows = new int[fields.length - 1];
+                        for (int i = 0; i < tunnelRows.length; i++) {
+                            tunnelRows[i] = Integer.parseInt(fields[i + 1]);
+                        }
+                    }
+                    default -> {} // Comment
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("Bad maze metadata line: " + line, e);
+            }
+        }
+        // Trailing blank lines are editor noise, not maze rows
+        while (!tileMap.isEmpty() && tileMap.get(tileMap.size() - 1).isEmpty()) {
+            tileMap.remove(tileMap.size() - 1);
+        }
+
+        String[] rows = tileMap.toArray(new String[0]);
+        int columns = rows.length == 0 ? 0 : rows[0].length();
+        int cherryTile = -1;
+        if (cherry) {
+            if (cherryRow < 0 || cherryRow >= rows.length || cherryColumn < 0 || cherryColumn >= columns) {
+                throw new IOException("Cherry tile outside maze " + name);
+            }
+            cherryTile = cherryRow * columns + cherryColumn;
+        }
+        return new Maze(name, rows, cherryTile, tunnelRows);
+    }
+
+    public static Maze readText(String name, InputStream in) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return readText(name, reader);
+        }
+    }
+
+    // Reads the binary format from the buffer's position
+    public static Maze read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 5 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a maze file");
+        }
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported maze version " + version);
+        }
+        String name;
+        int rows;
+        int columns;
+        int cherryTile;
+        int[] tunnelRows;
+        try {
+            byte[] nameBytes = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(nameBytes);
+            name = new String(nameBytes, StandardCharsets.UTF_8);
+            rows = buffer.getShort() & 0xFFFF;
+            columns = buffer.getShort() & 0xFFFF;
+            cherryTile = buffer.getInt();
+            tunnelRows = new int[buffer.getShort() & 0xFFFF];
+            for (int i = 0; i < tunnelRows.length; i++) {
+                tunnelRows[i] = buffer.getShort() & 0xFFFF;
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated maze header", e);
+        }
+
+        if (cherryTile < 0) {
+            throw new IOException("Maze " + name + " has no cherry tile");
+        }
+        // Both sizes are at most 0xFFFF, so the product fits a long but not always an int
+        long tiles = (long) rows * columns;
+        if (tiles > Integer.MAX_VALUE || buffer.remaining() < (tiles + 1) / 2) {
+            throw new IOException("Truncated maze " + name);
+        }
+        int tileCount = (int) tiles;
+        byte[] codes = new byte[tileCount];
+        for (int i = 0; i < tileCount; i += 2) {
+            int packed = buffer.get();
+            codes[i] = checkedCode(name, (packed >> 4) & 0xF);
+            if (i + 1 < tileCount) {
+                codes[i + 1] = checkedCode(name, packed & 0xF);
+            }
+        }
+        try {
+            return new Maze(name, rows, columns, codes, cherryTile, tunnelRows);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e); // Failed validation
+        }
+    }
+
+    // The binary format, the same bytes save() writes
+    public byte[] toBytes() {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int tileCount = rows * columns;
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 1 + 2 + nameBytes.length + 2 + 2 + 4 + 2
+                + 2 * tunnelRows.length + (tileCount + 1) / 2);
+        buffer.putInt(MAGIC).put(VERSION);
+        buffer.putShort((short) nameBytes.length).put(nameBytes);
+        buffer.putShort((short) rows).putShort((short) columns);
+        buffer.putInt(cherryTile);
+        buffer.putShort((short) tunnelRows.length);
+        for (int row : tunnelRows) {
+            buffer.putShort((short) row);
+        }
+        for (int i = 0; i < tileCount; i += 2) {
+            int low = i + 1 < tileCount ? codes[i + 1] : 0;
+            buffer.put((byte) (codes[i] << 4 | low));
+        }
+        return buffer.array();
+    }
+
+    public void save(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(toBytes());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static byte checkedCode(String name, int code) throws IOException {
+        if (code >= LEGEND.length()) {
+            throw new IOException("Bad tile code " + code + " in maze " + name);
+        }
+        return (byte) code;
+    }
+
+    private static byte[] encode(String name, String[] tileMap) {
+        if (tileMap.length > 0xFFFF || (tileMap.length > 0 && tileMap[0].length() > 0xFFFF)) {
+            throw new IllegalArgumentException("Maze " + name + " is too big");
+        }
+        int columns = tileMap.length == 0 ? 0 : tileMap[0].length();
+        byte[] codes = new byte[tileMap.length * columns];
+        for (int r = 0; r < tileMap.length; r++) {
+            String row = tileMap[r];
+            if (row.length() != columns) {
+                throw new IllegalArgumentException("Maze " + name + " row " + r + " is " + row.length()
+                        + " tiles wide instead of " + columns);
+            }
+            for (int c = 0; c < columns; c++) {
+                int code = LEGEND.indexOf(row.charAt(c));
+                if (code < 0) {
+                    throw new IllegalArgumentException("Maze " + name + " has unknown tile '" + row.charAt(c)
+                            + "' at column " + c + ", row " + r);
+                }
+                codes[r * columns + c] = (byte) code;
+            }
+        }
+        return codes;
+    }
+
+    // Rows whose first and last tiles are both open
+    private int[] defaultTunnelRows() {
+        int count = 0;
+        int[] found = new int[rows];
+        for (int r = 0; r < rows; r++) {
+            if (walls[r * columns] == 0 && walls[r * columns + columns - 1] == 0) {
+                found[count++] = r;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    // Two rows below the ghost starts, centred on them, snapped to the nearest reachable open tile.
+    // Without ghosts, pacman's start.
+    private int defaultCherryTile() {
+        if (actorTiles.length == 1) {
+            return actorTiles[GameEngine.PACMAN];
+        }
+        int lowestRow = 0;
+        int columnSum = 0;
+        for (int ghost = 1; ghost < actorTiles.length; ghost++) {
+            lowestRow = Math.max(lowestRow, actorTiles[ghost] / columns);
+            columnSum += actorTiles[ghost] % columns;
+        }
+        int row = Math.min(rows - 1, lowestRow + 2);
+        int column = columnSum / (actorTiles.length - 1);
+
+        int[] distances = reachableFrom(actorTiles[GameEngine.PACMAN]);
+        int best = actorTiles[GameEngine.PACMAN];
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < distances.length; i++) {
+            if (distances[i] >= 0) {
+                int d = Math.abs(i / columns - row) + Math.abs(i % columns - column);
+                if (d < bestDistance) {
+                    best = i;
+                    bestDistance = d;
+                }
+            }
+        }
+        return best;
+    }
+
+    // Every dot, power pellet, ghost start and the cherry tile must be reachable by pacman
+    private void validate() {
+        if (cherryTile < 0 || cherryTile >= walls.length || walls[cherryTile] != 0) {
+            throw new IllegalArgumentException("Maze " + name + " cherry tile is not an open tile");
+        }
+
+        int[] distances = reachableFrom(actorTiles[GameEngine.PACMAN]);
+        for (int i = 0; i < distances.length; i++) {
+            if (distances[i] >= 0) {
+                continue;
+            }
+            char tile = LEGEND.charAt(codes[i]);
+            boolean required = tile != 'X' && tile != 'O' || i == cherryTile;
+            if (required) {
+                throw new IllegalArgumentException("Maze " + name + " has an unreachable '" + tile
+                        + "' at column " + (i % columns) + ", row " + (i / columns));
+            }
+        }
+    }
+
+    // Breadth-first step counts from the nearest of some tiles over open tiles and tunnels, -1
+    // where unreachable
+    private int[] reachableFrom(int... starts) {
+        boolean[] tunnel = new boolean[rows];
+        for (int row : tunnelRows) {
+            tunnel[row] = true;
+        }
+        int[] distances = new int[walls.length];
+        Arrays.fill(distances, -1);
+        int[] queue = new int[walls.length];
+        int head = 0;
+        int tail = 0;
+        for (int start : starts) {
+            if (distances[start] < 0) {
+                distances[start] = 0;
+                queue[tail++] = start;
+            }
+        }
+        while (head < tail) {
+            int tile = queue[head++];
+            int row = tile / columns;
+            int column = tile % columns;
+            for (int d = 0; d < 4; d++) {
+                int r = row + GameEngine.directionDeltaY[d];
+                int c = column + GameEngine.directionDeltaX[d];
+                if (tunnel[row] && (c < 0 || c >= columns)) {
+                    c = Math.floorMod(c, columns);
+                }
+                if (r < 0 || r >= rows || c < 0 || c >= columns) {
+                    continue;
+                }
+                int next = r * columns + c;
+                if (walls[next] == 0 && distances[next] < 0) {
+                    distances[next] = distances[tile] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return distances;
+    }
+
+    // Arguments: maze file(s). Validates each and writes a binary copy next to text ones.
+    public static void main(String[] args) throws IOException {
+        for (String arg : args) {
+            Path path = Path.of(arg);
+            Maze maze = load(path);
+            System.out.printf("%s: %s, %dx%d, %d dots, %d power pellets, %d ghosts, tunnels %s%n",
+                    arg, maze.name, maze.columns, maze.rows, maze.foodCount, maze.pelletCount,
+                    maze.actorCount() - 1, Arrays.toString(maze.tunnelRows));
+            if (!arg.endsWith(".pmz")) {
+                maze.save(Path.of(arg.replaceFirst("\\.[^.]*$", "") + ".pmz"));
+            }
+        }
+    }
+}
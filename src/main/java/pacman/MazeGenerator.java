@@ -0,0 +1,347 @@
+package pacman;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Generates Pac-Man style mazes of any size from a seed: one-tile corridors with no dead ends,
+// mirrored left to right, a ghost house in the middle with pacman below it, wrap-around tunnels
+// and power pellets in the corners plus spread over the board. The same options and seed always
+// give the same maze.
+//
+// Corridors run through a grid of cells at odd rows and columns. A depth-first spanning tree over
+// the cells makes everything reachable, then every dead end gets opened towards a neighbour and a
+// share of the remaining inner walls is knocked out for loops. The work is linear in the tile
+// count, so a 1000x1000 board takes well under a second. Every size plays with the default
+// ChaseScatterGhostPolicy: NavGraph drops its all-pairs table on big boards, so building the graph
+// stays linear too, and a tick at 1000x1000 takes a few hundred microseconds.
+public final class MazeGenerator {
+    static final int MIN_SIZE = 11; // Room for the border, the ghost house, its ring and pacman
+
+    // rows and columns are the tile counts. tunnels is the number of wrap-around rows and
+    // powerPellets the number of power pellets, both best effort on small boards. loops is the
+    // share (0-1) of inner walls removed on top of those needed to clear dead ends.
+    public record Options(int rows, int columns, boolean symmetric, int tunnels, int powerPellets, double loops) {
+        public Options {
+            if (rows < MIN_SIZE || columns < MIN_SIZE) {
+                throw new IllegalArgumentException("Mazes need at least " + MIN_SIZE + "x" + MIN_SIZE + " tiles");
+            }
+            if (rows > 0xFFFF || columns > 0xFFFF || (long) rows * columns > 1 << 28) {
+                throw new IllegalArgumentException("Maze of " + columns + "x" + rows + " tiles is too big");
+            }
+            if (tunnels < 0 || powerPellets < 0 || loops < 0 || loops > 1) {
+                throw new IllegalArgumentException("Bad maze options");
+            }
+        }
+
+        // Symmetric, with a tunnel per 16 rows, a power pellet per 100 tiles (at least 4) and 10% loops
+        public static Options sized(int rows, int columns) {
+            return new Options(rows, columns, true, Math.max(1, rows / 16),
+                    Math.max(4, rows * columns / 100), 0.1);
+        }
+    }
+
+    private static final byte WALL = (byte) Maze.LEGEND.indexOf('X');
+    private static final byte EMPTY = (byte) Maze.LEGEND.indexOf('O');
+    private static final byte FOOD = (byte) Maze.LEGEND.indexOf(' ');
+    private static final byte PELLET = (byte) Maze.LEGEND.indexOf('@');
+
+    private final Options options;
+    private final SplittableRandom random;
+
+    // The base grid: odd sizes, with (width - 1) / 2 odd so the middle column is a cell column.
+    // Wider or taller boards repeat the border columns, the middle column and the bottom row.
+    private final int height;
+    private final int width;
+    private final int middle;
+    private final byte[] open; // 1 for open base grid tiles
+    private final byte[] tiles; // Codes of the base grid once decorated
+
+    private MazeGenerator(Options options, long seed) {
+        this.options = options;
+        this.random = new SplittableRandom(seed);
+        height = options.rows() % 2 == 1 ? options.rows() : options.rows() - 1;
+        int base = options.columns();
+        while (base % 4 != 3) {
+            base--;
+        }
+        width = base;
+        middle = (width - 1) / 2;
+        open = new byte[height * width];
+        tiles = new byte[height * width];
+    }
+
+    public static Maze generate(Options options, long seed) {
+        return new MazeGenerator(options, seed).build(
+                "generated-" + options.columns() + "x" + options.rows() + "-" + seed);
+    }
+
+    public static Maze generate(int rows, int columns, long seed) {
+        return generate(Options.sized(rows, columns), seed);
+    }
+
+    private Maze build(String name) {
+        carveSpanningTree();
+        removeDeadEnds();
+        addLoops();
+
+        for (int i = 0; i < open.length; i++) {
+            tiles[i] = open[i] != 0 ? FOOD : WALL;
+        }
+        int houseRow = ((height - 1) / 2) | 1;
+        int pacmanTile = placeGhostHouse(houseRow);
+        int[] tunnelRows = placeTunnels(houseRow);
+        placePowerPellets(pacmanTile);
+        return expand(name, tunnelRows);
+    }
+
+    // Depth-first over the cells, only the left half and middle column when mirrored
+    private void carveSpanningTree() {
+        int lastColumn = options.symmetric() ? middle : width - 2;
+        for (int r = 1; r < height - 1; r += 2) {
+            for (int c = 1; c <= lastColumn; c += 2) {
+                open[r * width + c] = 1;
+            }
+        }
+
+        boolean[] visited = new boolean[height * width];
+        int[] stack = new int[height * width / 4 + 1];
+        int[] choices = new int[4];
+        int top = 0;
+        int start = width + 1;
+        visited[start] = true;
+        stack[top++] = start;
+        while (top > 0) {
+            int cell = stack[top - 1];
+            int r = cell / width;
+            int c = cell % width;
+            int count = 0;
+            for (int d = 0; d < 4; d++) {
+                int nr = r + 2 * GameEngine.directionDeltaY[d];
+                int nc = c + 2 * GameEngine.directionDeltaX[d];
+                if (nr > 0 && nr < height - 1 && nc > 0 && nc <= lastColumn && !visited[nr * width + nc]) {
+                    choices[count++] = d;
+                }
+            }
+            if (count == 0) {
+                top--;
+                continue;
+            }
+            int d = choices[random.nextInt(count)];
+            int next = cell + 2 * (GameEngine.directionDeltaY[d] * width + GameEngine.directionDeltaX[d]);
+            open[cell + GameEngine.directionDeltaY[d] * width + GameEngine.directionDeltaX[d]] = 1;
+            visited[next] = true;
+            stack[top++] = next;
+        }
+
+        if (options.symmetric()) {
+            for (int r = 0; r < height; r++) {
+                for (int c = 0; c < middle; c++) {
+                    open[r * width + width - 1 - c] = open[r * width + c];
+                }
+            }
+        }
+    }
+
+    // Opens a wall next to every cell with a single exit, preferring one that leads to another dead end
+    private void removeDeadEnds() {
+        int[] choices = new int[4];
+        int lastColumn = options.symmetric() ? middle : width - 2;
+        for (int r = 1; r < height - 1; r += 2) {
+            for (int c = 1; c <= lastColumn; c += 2) {
+                int cell = r * width + c;
+                if (exits(cell) != 1) {
+                    continue;
+                }
+                int count = 0;
+                boolean deadEndFound = false;
+                for (int d = 0; d < 4; d++) {
+                    int nr = r + 2 * GameEngine.directionDeltaY[d];
+                    int nc = c + 2 * GameEngine.directionDeltaX[d];
+                    int wall = cell + GameEngine.directionDeltaY[d] * width + GameEngine.directionDeltaX[d];
+                    if (nr <= 0 || nr >= height - 1 || nc <= 0 || nc >= width - 1 || open[wall] != 0) {
+                        continue;
+                    }
+                    boolean deadEnd = exits(nr * width + nc) == 1;
+                    if (deadEnd && !deadEndFound) {
+                        count = 0;
+                        deadEndFound = true;
+                    }
+                    if (deadEnd == deadEndFound) {
+                        choices[count++] = wall;
+                    }
+                }
+                if (count > 0) {
+                    openWall(choices[random.nextInt(count)]);
+                }
+            }
+        }
+    }
+
+    private void addLoops() {
+        if (options.loops() == 0) {
+            return;
+        }
+        int lastColumn = options.symmetric() ? middle : width - 2;
+        for (int r = 1; r < height - 1; r++) {
+            // Walls between cells sit where exactly one of row and column is even
+            for (int c = 1 + (r & 1); c <= lastColumn; c += 2) {
+                if (open[r * width + c] == 0 && random.nextDouble() < options.loops()) {
+                    openWall(r * width + c);
+                }
+            }
+        }
+    }
+
+    private void openWall(int tile) {
+        open[tile] = 1;
+        if (options.symmetric()) {
+            open[tile - tile % width + width - 1 - tile % width] = 1;
+        }
+    }
+
+    private int exits(int cell) {
+        return open[cell - width] + open[cell + width] + open[cell - 1] + open[cell + 1];
+    }
+
+    // A walled box around the middle of the board with the ghosts inside and the red one in the
+    // door on top, ringed by a corridor. Pacman starts two cells below. Returns pacman's tile.
+    private int placeGhostHouse(int row) {
+        for (int r = row - 2; r <= row + 2; r++) {
+            for (int c = middle - 4; c <= middle + 4; c++) {
+                boolean ring = r == row - 2 || r == row + 2 || c == middle - 4 || c == middle + 4;
+                tiles[r * width + c] = ring ? FOOD : WALL;
+            }
+        }
+        tiles[row * width + middle - 2] = EMPTY;
+        tiles[row * width + middle - 1] = code('b');
+        tiles[row * width + middle] = code('p');
+        tiles[row * width + middle + 1] = code('o');
+        tiles[row * width + middle + 2] = EMPTY;
+        tiles[(row - 1) * width + middle] = code('r');
+
+        int pacmanTile = (row + 4) * width + middle;
+        tiles[pacmanTile] = code('P');
+        return pacmanTile;
+    }
+
+    // Cell rows away from the ghost house, opened at both edges
+    private int[] placeTunnels(int houseRow) {
+        int candidates = 0;
+        int[] rows = new int[height / 2];
+        for (int r = 1; r < height - 1; r += 2) {
+            if (Math.abs(r - houseRow) > 2) {
+                rows[candidates++] = r;
+            }
+        }
+        int count = Math.min(options.tunnels(), candidates);
+        // The first count entries of a partial shuffle, then sorted
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(candidates - i);
+            int swap = rows[i];
+            rows[i] = rows[j];
+            rows[j] = swap;
+        }
+        int[] tunnelRows = Arrays.copyOf(rows, count);
+        Arrays.sort(tunnelRows);
+        for (int r : tunnelRows) {
+            tiles[r * width] = EMPTY;
+            tiles[r * width + width - 1] = EMPTY;
+        }
+        return tunnelRows;
+    }
+
+    // The four corner cells first, then random cells that still hold a dot
+    private void placePowerPellets(int pacmanTile) {
+        int remaining = options.powerPellets();
+        int[] corners = {width + 1, width + width - 2, (height - 2) * width + 1, (height - 2) * width + width - 2};
+        for (int corner : corners) {
+            if (remaining > 0 && tiles[corner] == FOOD) {
+                tiles[corner] = PELLET;
+                remaining--;
+            }
+        }
+        int cellRows = (height - 1) / 2;
+        int cellColumns = options.symmetric() ? (middle + 1) / 2 : (width - 1) / 2;
+        for (int attempt = 0; remaining > 0 && attempt < options.powerPellets() * 8; attempt++) {
+            int r = 2 * random.nextInt(cellRows) + 1;
+            int c = 2 * random.nextInt(cellColumns) + 1;
+            int tile = r * width + c;
+            if (tiles[tile] != FOOD || Math.abs(tile - pacmanTile) <= 2) {
+                continue;
+            }
+            tiles[tile] = PELLET;
+            remaining--;
+            int mirror = r * width + width - 1 - c;
+            if (options.symmetric() && mirror != tile && remaining > 0) {
+                tiles[mirror] = PELLET;
+                remaining--;
+            }
+        }
+    }
+
+    // Widens the base grid to the requested size and builds the Maze
+    private Maze expand(String name, int[] tunnelRows) {
+        int rows = options.rows();
+        int columns = options.columns();
+        int extra = columns - width; // 0 to 3: odd adds a copy of the middle column, 2 or 3 a border column each side
+        int borderCopies = extra >= 2 ? 1 : 0;
+        int[] sourceColumn = new int[columns];
+        boolean[] middleCopy = new boolean[columns];
+        int f = 0;
+        for (int copy = 0; copy <= borderCopies; copy++) {
+            sourceColumn[f++] = 0;
+        }
+        for (int c = 1; c < width - 1; c++) {
+            sourceColumn[f++] = c;
+            if (c == middle && extra % 2 == 1) {
+                middleCopy[f] = true;
+                sourceColumn[f++] = c;
+            }
+        }
+        for (int copy = 0; copy <= borderCopies; copy++) {
+            sourceColumn[f++] = width - 1;
+        }
+
+        byte[] codes = new byte[rows * columns];
+        for (int r = 0; r < rows; r++) {
+            int sourceRow = Math.min(r, height - 1);
+            for (int c = 0; c < columns; c++) {
+                byte code = tiles[sourceRow * width + sourceColumn[c]];
+                if (middleCopy[c] && code != WALL && code != FOOD && code != PELLET) {
+                    code = EMPTY; // Actors only appear once
+                }
+                codes[r * columns + c] = code;
+            }
+        }
+        return new Maze(name, rows, columns, codes, -1, tunnelRows);
+    }
+
+    private static byte code(char tile) {
+        return (byte) Maze.LEGEND.indexOf(tile);
+    }
+
+    // Arguments: rows columns [seed] [count] [directory]. Without a directory, prints one maze in the
+    // text format; with one, writes count binary mazes for seeds seed, seed + 1, ...
+    public static void main(String[] args) throws IOException {
+        int rows = Integer.parseInt(args[0]);
+        int columns = Integer.parseInt(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+        int count = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        if (args.length <= 4) {
+            Maze maze = generate(rows, columns, seed);
+            System.out.println("# name " + maze.name);
+            for (String row : maze.tileMap()) {
+                System.out.println(row);
+            }
+            return;
+        }
+        Path directory = Files.createDirectories(Path.of(args[4]));
+        for (int i = 0; i < count; i++) {
+            Maze maze = generate(rows, columns, seed + i);
+            maze.save(directory.resolve(maze.name + ".pmz"));
+        }
+    }
+}
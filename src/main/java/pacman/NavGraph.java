@@ -0,0 +1,342 @@
+package pacman;
+
+import java.util.Arrays;
+
+// Navigation data for one maze, built once from its walls. Junctions and dead ends are nodes,
+// the corridors between them are edges, and an all-pairs node distance table turns any
+// tile-to-tile path length into a constant-time lookup.
+//
+// The table grows with the square of the node count, so big mazes go without it: distances
+// then come from a breadth-first distance field per target tile, grown only as far as needed.
+// Each thread keeps its last few, since ghosts chase the same tiles decision after decision.
+//
+// Tunnel rows connect their left and right edge tiles. Crossing counts as one step, though actors
+// take two, passing the tile just off the board.
+public class NavGraph {
+    static final int UNREACHABLE = Integer.MAX_VALUE / 4;
+    static final long MAX_TABLE_ENTRIES = 1 << 20; // 4 MB of distances
+    static final long MAX_TABLE_WORK = 1L << 22; // Tiles visited building it, nodes times tiles
+    private static final int TARGET_FIELDS = 4; // Distance fields kept per thread without the table
+
+    final int rows;
+    final int columns;
+    private final boolean[] walkable;
+    private final boolean[] tunnelRow;
+
+    private final int[] nodeOfTile; // Node id of each tile, or -1
+    private int[] nodeTiles = new int[16];
+    private int nodeCount = 0;
+
+    // For every walkable tile: the nodes at both ends of its corridor and the steps to each.
+    // A node tile is its own end at distance 0.
+    private final int[] endA;
+    private final int[] endB;
+    private final int[] distanceA;
+    private final int[] distanceB;
+    private final int[] corridorOfTile; // Corridor id, or -1 for node tiles
+    private int corridorCount = 0;
+
+    private final int[] nodeDistances; // nodeCount * nodeCount steps, or null for targetFields
+    private final ThreadLocal<TargetFields> targetFields = ThreadLocal.withInitial(TargetFields::new);
+    private final int[] nearestWalkable; // Closest walkable tile to each tile, for wall targets
+
+    NavGraph(byte[] tiles, int rows, int columns, byte wallFlag, int[] tunnelRows) {
+        this.rows = rows;
+        this.columns = columns;
+        int tileCount = rows * columns;
+
+        walkable = new boolean[tileCount];
+        for (int i = 0; i < tileCount; i++) {
+            walkable[i] = (tiles[i] & wallFlag) == 0;
+        }
+        tunnelRow = new boolean[rows];
+        for (int row : tunnelRows) {
+            tunnelRow[row] = true;
+        }
+
+        nodeOfTile = new int[tileCount];
+        corridorOfTile = new int[tileCount];
+        endA = new int[tileCount];
+        endB = new int[tileCount];
+        distanceA = new int[tileCount];
+        distanceB = new int[tileCount];
+        Arrays.fill(nodeOfTile, -1);
+        Arrays.fill(corridorOfTile, -1);
+
+        // Anything that is not a plain corridor tile (exactly two exits) becomes a node
+        for (int i = 0; i < tileCount; i++) {
+            if (walkable[i] && Integer.bitCount(exits(i)) != 2) {
+                addNode(i);
+            }
+        }
+        int[] corridor = new int[tileCount];
+        for (int node = 0; node < nodeCount; node++) {
+            walkCorridors(node, corridor);
+        }
+        // Closed loops without any junction still need a node to hang their corridor on
+        for (int i = 0; i < tileCount; i++) {
+            if (walkable[i] && nodeOfTile[i] < 0 && corridorOfTile[i] < 0) {
+                walkCorridors(addNode(i), corridor);
+            }
+        }
+
+        long entries = (long) nodeCount * nodeCount;
+        boolean table = entries <= MAX_TABLE_ENTRIES && (long) nodeCount * tileCount <= MAX_TABLE_WORK;
+        nodeDistances = table ? computeNodeDistances() : null;
+        nearestWalkable = computeNearestWalkable();
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int corridorCount() {
+        return corridorCount;
+    }
+
+    // Whether distances are table lookups rather than distance fields
+    public boolean hasNodeTable() {
+        return nodeDistances != null;
+    }
+
+    public boolean isWalkable(int tile) {
+        return walkable[tile];
+    }
+
+    // Snaps a tile (possibly a wall) to the closest walkable tile
+    public int nearestWalkable(int tile) {
+        return nearestWalkable[tile];
+    }
+
+    // Shortest path length in steps between two walkable tiles
+    public int distance(int from, int to) {
+        if (from == to) {
+            return 0;
+        }
+        if (nodeDistances == null) {
+            return targetFields.get().distance(from, to);
+        }
+        int best = UNREACHABLE;
+        int corridor = corridorOfTile[from];
+        if (corridor >= 0 && corridor == corridorOfTile[to]) {
+            best = Math.abs(distanceA[from] - distanceA[to]);
+        }
+        best = Math.min(best, distanceA[from] + nodeDistance(endA[from], endA[to]) + distanceA[to]);
+        best = Math.min(best, distanceA[from] + nodeDistance(endA[from], endB[to]) + distanceB[to]);
+        best = Math.min(best, distanceB[from] + nodeDistance(endB[from], endA[to]) + distanceA[to]);
+        best = Math.min(best, distanceB[from] + nodeDistance(endB[from], endB[to]) + distanceB[to]);
+        return best;
+    }
+
+    // Bitmask over GameEngine.ghostDirections of the walkable neighbours of a tile
+    public int exits(int tile) {
+        int exits = 0;
+        for (int i = 0; i < 4; i++) {
+            if (neighbour(tile, i) >= 0) {
+                exits |= 1 << i;
+            }
+        }
+        return exits;
+    }
+
+    // The walkable tile one step from a tile, through a tunnel at the edge, or -1
+    public int neighbour(int tile, int direction) {
+        int row = tile / columns;
+        int r = row + GameEngine.directionDeltaY[direction];
+        int c = tile % columns + GameEngine.directionDeltaX[direction];
+        if (c < 0 || c >= columns) {
+            if (!tunnelRow[row]) {
+                return -1;
+            }
+            c = c < 0 ? columns - 1 : 0;
+        }
+        if (r < 0 || r >= rows || !walkable[r * columns + c]) {
+            return -1;
+        }
+        return r * columns + c;
+    }
+
+    private int nodeDistance(int a, int b) {
+        return nodeDistances[a * nodeCount + b];
+    }
+
+    private int addNode(int tile) {
+        if (nodeCount == nodeTiles.length) {
+            nodeTiles = Arrays.copyOf(nodeTiles, nodeCount * 2);
+        }
+        nodeTiles[nodeCount] = tile;
+        nodeOfTile[tile] = nodeCount;
+        endA[tile] = nodeCount;
+        endB[tile] = nodeCount;
+        return nodeCount++;
+    }
+
+    // Follows every corridor leaving the node that has not been walked yet
+    private void walkCorridors(int node, int[] corridor) {
+        int start = nodeTiles[node];
+        int startExits = exits(start);
+        for (int direction = 0; direction < 4; direction++) {
+            if ((startExits & (1 << direction)) == 0) {
+                continue;
+            }
+            int tile = neighbour(start, direction);
+            if (nodeOfTile[tile] >= 0 || corridorOfTile[tile] >= 0) {
+                continue; // Adjacent node, or a corridor already walked from its other end
+            }
+
+            int length = 0;
+            int previous = start;
+            while (nodeOfTile[tile] < 0) {
+                corridor[length++] = tile;
+                corridorOfTile[tile] = corridorCount;
+                int next = -1;
+                for (int d = 0; d < 4; d++) {
+                    int candidate = neighbour(tile, d);
+                    if (candidate >= 0 && candidate != previous) {
+                        next = candidate;
+                        break;
+                    }
+                }
+                previous = tile;
+                tile = next;
+            }
+
+            int end = nodeOfTile[tile];
+            for (int i = 0; i < length; i++) {
+                int t = corridor[i];
+                endA[t] = node;
+                distanceA[t] = i + 1;
+                endB[t] = end;
+                distanceB[t] = length - i;
+            }
+            corridorCount++;
+        }
+    }
+
+    // One breadth-first search over the tiles per node, read out at the other nodes. The caller
+    // has checked the size against MAX_TABLE_ENTRIES.
+    private int[] computeNodeDistances() {
+        int[] distances = new int[nodeCount * nodeCount];
+        int[] stepsTo = new int[walkable.length];
+        int[] queue = new int[walkable.length];
+        for (int node = 0; node < nodeCount; node++) {
+            stepsFrom(nodeTiles[node], stepsTo, queue);
+            for (int other = 0; other < nodeCount; other++) {
+                distances[node * nodeCount + other] = stepsTo[nodeTiles[other]];
+            }
+        }
+        return distances;
+    }
+
+    // Breadth-first search over the tiles, leaving UNREACHABLE on walls and cut-off tiles
+    private void stepsFrom(int source, int[] stepsTo, int[] queue) {
+        Arrays.fill(stepsTo, UNREACHABLE);
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        stepsTo[source] = 0;
+        while (head < tail) {
+            int tile = queue[head++];
+            for (int d = 0; d < 4; d++) {
+                int next = neighbour(tile, d);
+                if (next >= 0 && stepsTo[next] == UNREACHABLE) {
+                    stepsTo[next] = stepsTo[tile] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    // One thread's most recently used distance fields. Paths are symmetric, so a field spreading
+    // out from the target gives the distance to it from every tile. A field only spreads as far as
+    // the tiles asked about so far, and picks up from there on the next question.
+    private final class TargetFields {
+        private final int[] targets = new int[TARGET_FIELDS];
+        private final int[][] steps = new int[TARGET_FIELDS][];
+        private final int[][] queues = new int[TARGET_FIELDS][];
+        private final int[] heads = new int[TARGET_FIELDS];
+        private final int[] tails = new int[TARGET_FIELDS];
+        private final long[] lastUsed = new long[TARGET_FIELDS];
+        private long uses = 0;
+
+        TargetFields() {
+            Arrays.fill(targets, -1);
+        }
+
+        int distance(int from, int target) {
+            int slot = slot(target);
+            int[] stepsTo = steps[slot];
+            int[] queue = queues[slot];
+            int head = heads[slot];
+            int tail = tails[slot];
+            while (stepsTo[from] == UNREACHABLE && head < tail) {
+                int tile = queue[head++];
+                for (int d = 0; d < 4; d++) {
+                    int next = neighbour(tile, d);
+                    if (next >= 0 && stepsTo[next] == UNREACHABLE) {
+                        stepsTo[next] = stepsTo[tile] + 1;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            heads[slot] = head;
+            tails[slot] = tail;
+            return stepsTo[from];
+        }
+
+        // The target's field, restarted in the least recently used slot when not kept
+        private int slot(int target) {
+            int slot = 0;
+            for (int i = 0; i < TARGET_FIELDS; i++) {
+                if (targets[i] == target) {
+                    lastUsed[i] = ++uses;
+                    return i;
+                }
+                if (lastUsed[i] < lastUsed[slot]) {
+                    slot = i;
+                }
+            }
+            if (steps[slot] == null) {
+                steps[slot] = new int[walkable.length];
+                queues[slot] = new int[walkable.length];
+            }
+            Arrays.fill(steps[slot], UNREACHABLE);
+            steps[slot][target] = 0;
+            queues[slot][0] = target;
+            heads[slot] = 0;
+            tails[slot] = 1;
+            targets[slot] = target;
+            lastUsed[slot] = ++uses;
+            return slot;
+        }
+    }
+
+    // Multi-source breadth-first search from every walkable tile across the whole grid
+    private int[] computeNearestWalkable() {
+        int[] nearest = new int[walkable.length];
+        Arrays.fill(nearest, -1);
+        int[] queue = new int[walkable.length];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < walkable.length; i++) {
+            if (walkable[i]) {
+                nearest[i] = i;
+                queue[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int tile = queue[head++];
+            int row = tile / columns;
+            int column = tile % columns;
+            for (int d = 0; d < 4; d++) {
+                int r = row + GameEngine.directionDeltaY[d];
+                int c = column + GameEngine.directionDeltaX[d];
+                if (r >= 0 && r < rows && c >= 0 && c < columns && nearest[r * columns + c] < 0) {
+                    nearest[r * columns + c] = nearest[tile];
+                    queue[tail++] = r * columns + c;
+                }
+            }
+        }
+        return nearest;
+    }
+}
@@ -0,0 +1,43 @@
+package pacman;
+
+// Wire format shared by GameServer and GameClient. Every message is a frame: an int payload
+// length followed by the payload, big-endian, starting with a type byte.
+//
+// Client to server:
+//   JOIN        int room, byte role
+//   INPUT       byte direction (index into GameEngine.ghostDirections)
+//
+// Server to client:
+//   WELCOME     int room, byte actor (-1 for spectators), int maze byte count, binary maze,
+//               int state byte count, GameEngine state
+//   FULL_STATE  int state byte count, GameEngine state; sent after a restart or a new level
+//   DELTA       long tick, int score, int lives, int level, byte flags,
+//               short actor count, per changed actor: byte actor, int x, int y (GameEngine.TILE_UNITS to a tile),
+//               byte direction, byte ghost mode,
+//               int eaten tile count, eaten tile indexes
+final class NetProtocol {
+    static final int DEFAULT_PORT = 7707;
+    static final int MAX_FRAME = 1 << 20;
+
+    static final byte JOIN = 1;
+    static final byte INPUT = 2;
+
+    // Payload lengths of the client messages, type byte included
+    static final int JOIN_LENGTH = 6;
+    static final int INPUT_LENGTH = 2;
+
+    static final byte WELCOME = 1;
+    static final byte FULL_STATE = 2;
+    static final byte DELTA = 3;
+
+    static final byte ROLE_PACMAN = 0;
+    static final byte ROLE_GHOST = 1;
+    static final byte ROLE_SPECTATOR = 2;
+
+    // DELTA flag bits
+    static final int FLAG_GAME_OVER = 1;
+    static final int FLAG_POWER_PELLET = 2;
+    static final int FLAG_CHERRY = 4;
+
+    private NetProtocol() {}
+}
@@ -0,0 +1,78 @@
+package pacman;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+public class PacManFrame extends JFrame {
+    private static final int SAVE_HISTORY_BYTES = 8 << 20;
+
+    public PacManFrame() {
+        this(Maze.CLASSIC);
+    }
+
+    public PacManFrame(Maze maze) {
+        setTitle("Pac-Man");
+        setResizable(false);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+
+        GameEngine engine = new GameEngine(maze, new Random().nextLong(),
+                GameSettings.DEFAULT, new ChaseScatterGhostPolicy());
+        String savePath = System.getProperty("pacman.save");
+        SnapshotFile snapshots = null;
+        if (savePath != null) {
+            snapshots = openSave(Path.of(savePath), engine);
+            if (snapshots != null && snapshots.snapshotCount() > 0) {
+                engine = snapshots.resume();
+            }
+        }
+
+        PacManPanel pacManPanel = new PacManPanel(engine, snapshots);
+        if (snapshots != null) {
+            SnapshotFile saved = snapshots;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> close(saved), "snapshot-close"));
+        }
+        add(pacManPanel);
+        pack();
+        setLocationRelativeTo(null);
+        requestFocus();
+
+        // Shows the window straight away; the icon follows once decoded
+        SpriteCache.icon().thenAccept(image -> SwingUtilities.invokeLater(() -> setIconImage(image)));
+
+        setVisible(true);
+    }
+
+    // Forces the last snapshots to disk when the JVM exits
+    private static void close(SnapshotFile snapshots) {
+        try {
+            snapshots.close();
+        } catch (IOException e) {
+            System.err.println("Could not close save file: " + e);
+        }
+    }
+
+    // The save file to keep playing from, or a new one for the engine when there is none to resume.
+    // The game still runs, just without saving, when neither works.
+    private static SnapshotFile openSave(Path path, GameEngine engine) {
+        if (Files.exists(path)) {
+            try {
+                SnapshotFile snapshots = SnapshotFile.open(path);
+                if (snapshots.snapshotCount() > 0) {
+                    return snapshots;
+                }
+                snapshots.close();
+            } catch (IOException e) {
+                System.err.println("Could not resume from " + path + ": " + e);
+            }
+        }
+        try {
+            return SnapshotFile.create(path, engine, SAVE_HISTORY_BYTES);
+        } catch (IOException e) {
+            System.err.println("Could not save to " + path + ": " + e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package pacman;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Shows a GameEngine and feeds it keyboard input. The engine is stepped by a GameLoop thread,
+// so every access to it here happens while holding the engine's monitor. Frames are painted from
+// a copy taken under the monitor, so a slow paint never holds up a tick.
+public class PacManPanel extends JPanel implements KeyListener {
+    private final int TILE_SIZE = GameEngine.TILE_SIZE;
+
+    GameEngine engine;
+    GameRenderer renderer;
+    GameLoop gameLoop;
+
+    // Handed from the EDT to the loop thread, guarded by this panel's monitor
+    private char pendingDirection = ' '; // Direction requested since the last tick
+    private long pendingSince;
+
+    // Guarded by the engine's monitor: the last request that has not moved pacman yet, for input latency
+    private char awaitedDirection = ' ';
+    private long awaitedSince;
+
+    // Guarded by the engine's monitor: the inputs of the current game. Finished games are saved to
+    // the directory named by -Dpacman.replays, if set, on the replay writer thread.
+    private ReplayRecorder recorder; // Null for a game that was resumed or rewound
+    private final String replayDirectory = System.getProperty("pacman.replays");
+    private final ExecutorService replayWriter = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "replay-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Every finished game, kept in the file named by -Dpacman.leaderboard (pacman-scores.pmlb by
+    // default, empty to keep nothing) and shown in the HUD's high score table. Null when not kept.
+    private final Leaderboard leaderboard;
+
+    // Guarded by the engine's monitor: every tick's state, for resuming and for rewinding with
+    // backspace. Null when not saving.
+    private final SnapshotFile snapshots;
+    private static final long REWIND_TICKS = 3_000_000_000L / GameLoop.TICK_NANOS;
+
+    // What happens in the game, for listeners on their own threads (audio, telemetry, achievements).
+    // -Dpacman.events=true prints every event.
+    final GameEventBus events = new GameEventBus(1024);
+
+    // Attract mode: with -Dpacman.autopilot=<milliseconds per move>, a SearchPacmanPolicy plays
+    // instead of the keyboard and a new game starts a few seconds after each game over. The search
+    // runs on the loop thread over a copy of the engine, outside its monitor, and its budget is
+    // capped at half a tick. Null when off.
+    private final SearchPacmanPolicy autopilot;
+    private final GameEngine autopilotEngine; // Loop thread only: the copy the autopilot searches
+    private final ByteBuffer autopilotState;
+    private static final long MAX_AUTOPILOT_MILLIS = GameLoop.TICK_NANOS / 2_000_000L;
+    private static final long ATTRACT_RESTART_TICKS = 3_000_000_000L / GameLoop.TICK_NANOS;
+    private long gameOverTicks = 0;
+
+    // Guarded by the engine's monitor: records the first game to the file or directory named by
+    // -Dpacman.capture, see FrameExporter for the formats. Null when not capturing.
+    private LiveCapture capture;
+
+    // EDT only: the engine as of the last copy, which every frame is painted from
+    private final GameEngine view;
+    private boolean viewCopied; // Set while renderFrame() paints, which has already taken the copy
+
+    // EDT only: what the last frame showed, to work out which regions need repainting
+    private float alpha = 1f;
+    private int[] drawnActors = new int[0]; // x, y pairs per actor index
+    private int[] previousActors = new int[0];
+    private boolean drawnCherryVisible;
+    private int drawnMapVersion;
+    private boolean drawnGameOver;
+
+    PacManPanel() {
+        this(new GameEngine());
+    }
+
+    PacManPanel(GameEngine engine) {
+        this(engine, null);
+    }
+
+    PacManPanel(GameEngine engine, SnapshotFile snapshots) {
+        this.engine = engine;
+        this.snapshots = snapshots;
+        this.view = new GameEngine(engine.maze, engine.seed, engine.settings, engine.ghostPolicy);
+        setPreferredSize(new Dimension(engine.BOARD_WIDTH, engine.BOARD_HEIGHT));
+        setBackground(Color.BLACK);
+        addKeyListener(this);
+        setFocusable(true);
+
+        GraphicsConfiguration graphicsConfiguration = GraphicsEnvironment.isHeadless()
+                ? null
+                : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+        renderer = new GameRenderer(graphicsConfiguration);
+        renderer.spritesLoaded().thenRun(() -> SwingUtilities.invokeLater(this::repaint));
+        recorder = engine.tickCount == 0 ? new ReplayRecorder(engine) : null;
+        leaderboard = openLeaderboard();
+        engine.events = events;
+        if (Boolean.getBoolean("pacman.events")) {
+            events.subscribe("log", new EventLog());
+        }
+        Long autopilotMillis = Long.getLong("pacman.autopilot");
+        if (autopilotMillis != null) {
+            autopilot = new SearchPacmanPolicy(Math.min(autopilotMillis, MAX_AUTOPILOT_MILLIS));
+            autopilotEngine = new GameEngine(engine.maze, engine.seed, engine.settings, engine.ghostPolicy);
+            autopilotState = ByteBuffer.allocate(engine.stateSize());
+        } else {
+            autopilot = null;
+            autopilotEngine = null;
+            autopilotState = null;
+        }
+        String captureOutput = System.getProperty("pacman.capture");
+        if (captureOutput != null) {
+            try {
+                int framesPerSecond = (int) (1_000_000_000L / GameLoop.TICK_NANOS);
+                capture = new LiveCapture(engine, new FrameExporter(
+                        Path.of(captureOutput), engine.BOARD_WIDTH, engine.BOARD_HEIGHT, framesPerSecond));
+            } catch (IOException e) {
+                System.err.println("Could not capture to " + captureOutput + ": " + e.getMessage());
+            }
+        }
+
+        gameLoop = new GameLoop(this, 60);
+        gameLoop.start();
+    }
+
+    public void paintComponent(Graphics g) {
+        if (!viewCopied) {
+            copyView();
+        }
+        super.paintComponent(g);
+        renderer.render(g, view, alpha);
+    }
+
+    public void draw(Graphics g) {
+        copyView();
+        renderer.render(g, view);
+    }
+
+    private void copyView() {
+        synchronized (engine) {
+            engine.copyViewTo(view);
+        }
+    }
+
+    // Called by the loop thread once per logic tick
+    void tick() {
+        char input;
+        long since;
+        synchronized (this) {
+            input = pendingDirection;
+            since = pendingSince;
+            pendingDirection = ' ';
+        }
+        if (autopilot != null) {
+            input = nextAutopilotDirection();
+            since = System.nanoTime();
+        }
+
+        synchronized (engine) {
+            if (engine.isGameOver) {
+                if (autopilot != null && ++gameOverTicks >= ATTRACT_RESTART_TICKS) {
+                    restartGame();
+                }
+                return;
+            }
+            if (input != ' ') {
+                awaitedDirection = input;
+                awaitedSince = since;
+                if (recorder != null) {
+                    recorder.record(engine.tickCount, input);
+                }
+            }
+            FrameMetrics metrics = gameLoop.metrics();
+            if (metrics.isEnabled()) {
+                long collisions = engine.collisionChecks;
+                long redirects = engine.ghostRedirects;
+                long loadMaps = engine.loadMapCount;
+                long moveStart = System.nanoTime();
+                engine.step(input);
+                long moveNanos = System.nanoTime() - moveStart;
+                long loadMapNanos = engine.loadMapCount != loadMaps ? engine.lastLoadMapNanos : -1;
+                metrics.recordStep(moveNanos, engine.collisionChecks - collisions,
+                        engine.ghostRedirects - redirects, loadMapNanos, engine.score, engine.level);
+            } else {
+                engine.step(input);
+            }
+            if (snapshots != null) {
+                snapshots.save(engine);
+            }
+            if (engine.isGameOver) {
+                int score = engine.score; // The HUD's table belongs to the EDT, which paints it
+                SwingUtilities.invokeLater(() -> renderer.hud.recordScore(score));
+                finishGame();
+            }
+            if (capture != null) {
+                capture.offer(engine);
+                if (engine.isGameOver) {
+                    capture.finish();
+                }
+            }
+
+            int pacman = GameEngine.PACMAN;
+            boolean moved = engine.actorX[pacman] != engine.previousX[pacman]
+                    || engine.actorY[pacman] != engine.previousY[pacman];
+            boolean turned = GameEngine.ghostDirections[engine.direction[pacman]] == awaitedDirection;
+            if (awaitedDirection != ' ' && turned && moved) {
+                gameLoop.metrics().recordInputLatency(System.nanoTime() - awaitedSince);
+                awaitedDirection = ' ';
+            }
+        }
+    }
+
+    // Copies the engine under its monitor and searches the copy after releasing it. Only the EDT
+    // changes the engine between ticks (rewind, restart), which at worst makes one move stale.
+    private char nextAutopilotDirection() {
+        autopilotState.clear();
+        synchronized (engine) {
+            if (engine.isGameOver) {
+                return ' ';
+            }
+            engine.writeState(autopilotState);
+        }
+        autopilotState.flip();
+        autopilotEngine.readState(autopilotState);
+        return autopilot.nextDirection(autopilotEngine);
+    }
+
+    // Called with the engine's monitor held when a game ends. Saving the replay is left to the
+    // replay writer thread, which then puts the game on the leaderboard linked to the saved file.
+    private void finishGame() {
+        if (recorder == null || replayDirectory == null) {
+            if (leaderboard != null) {
+                leaderboard.record(engine, null);
+            }
+            return;
+        }
+        Replay replay = recorder.finish(engine);
+        int score = engine.score;
+        int level = engine.level;
+        long ticks = engine.tickCount;
+        long seed = engine.seed;
+        replayWriter.execute(() -> {
+            String file = saveReplay(replay);
+            if (leaderboard != null) {
+                leaderboard.record(score, level, ticks, seed, file);
+            }
+        });
+    }
+
+    // Returns the replay's file name, or null when it was not saved
+    private String saveReplay(Replay replay) {
+        if (replayDirectory == null) {
+            return null;
+        }
+        try {
+            Path directory = Files.createDirectories(Path.of(replayDirectory));
+            Path file = directory.resolve("pacman-" + System.currentTimeMillis() + ".pmr");
+            replay.save(file);
+            return file.toString();
+        } catch (IOException e) {
+            System.err.println("Could not save replay: " + e);
+            return null;
+        }
+    }
+
+    // Opens the leaderboard and fills the HUD's table from it; closed again when the JVM exits
+    private Leaderboard openLeaderboard() {
+        String file = System.getProperty("pacman.leaderboard", "pacman-scores.pmlb");
+        if (file.isEmpty()) {
+            return null;
+        }
+        try {
+            Leaderboard opened = Leaderboard.open(Path.of(file));
+            for (Leaderboard.Entry entry : opened.top(Hud.HIGH_SCORES)) {
+                renderer.hud.recordScore(entry.score());
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> close(opened), "leaderboard-close"));
+            return opened;
+        } catch (IOException e) {
+            System.err.println("Could not open leaderboard " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Lets replays still being saved reach the leaderboard before closing it
+    private void close(Leaderboard leaderboard) {
+        replayWriter.shutdown();
+        try {
+            replayWriter.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        leaderboard.close();
+    }
+
+    // Called on the EDT once per rendered frame
+    void renderFrame(float alpha) {
+        copyView();
+        viewCopied = true;
+        try {
+            this.alpha = alpha;
+            int actorCount = view.actorCount;
+            boolean fpsChanged = renderer.hud.frameRendered(System.nanoTime());
+
+            if (view.isGameOver && drawnGameOver) {
+                return; // The game over screen does not change
+            }
+            if (view.isGameOver != drawnGameOver
+                    || view.mapVersion != drawnMapVersion
+                    || drawnActors.length != actorCount * 2) {
+                drawnActors = new int[actorCount * 2];
+                previousActors = new int[actorCount * 2];
+                recordActors(alpha);
+                paintImmediately(0, 0, getWidth(), getHeight());
+            } else {
+                // Only repaint where actors were and are now, plus the cherry and HUD when they changed.
+                // paintImmediately keeps the regions apart; repaint() would merge them into one big union.
+                int[] previous = drawnActors;
+                drawnActors = previousActors;
+                previousActors = previous;
+                recordActors(alpha);
+                for (int i = 0; i < drawnActors.length; i += 2) {
+                    paintMoved(previous[i], previous[i + 1], drawnActors[i], drawnActors[i + 1]);
+                }
+                if (view.cherryVisible != drawnCherryVisible) {
+                    paintImmediately(GameEngine.toPixels(view.cherryX), GameEngine.toPixels(view.cherryY),
+                            TILE_SIZE, TILE_SIZE);
+                }
+                if (renderer.hud.changed(view)) {
+                    paintImmediately(renderer.hud.bounds(view));
+                }
+                if (fpsChanged) {
+                    paintImmediately(renderer.hud.fpsBounds(view));
+                }
+            }
+
+            drawnCherryVisible = view.cherryVisible;
+            drawnMapVersion = view.mapVersion;
+            drawnGameOver = view.isGameOver;
+        } finally {
+            viewCopied = false;
+        }
+    }
+
+    private void recordActors(float alpha) {
+        for (int actor = 0; actor < view.actorCount; actor++) {
+            drawnActors[actor * 2] = GameRenderer.drawX(view, actor, alpha);
+            drawnActors[actor * 2 + 1] = GameRenderer.drawY(view, actor, alpha);
+        }
+    }
+
+    // Repaints the union of an actor's old and new tile-sized bounds, or both when far apart
+    private void paintMoved(int oldX, int oldY, int newX, int newY) {
+        if (Math.abs(newX - oldX) < TILE_SIZE && Math.abs(newY - oldY) < TILE_SIZE) {
+            int x = Math.min(oldX, newX);
+            int y = Math.min(oldY, newY);
+            paintImmediately(x, y, Math.abs(newX - oldX) + TILE_SIZE, Math.abs(newY - oldY) + TILE_SIZE);
+        } else {
+            paintImmediately(oldX, oldY, TILE_SIZE, TILE_SIZE);
+            paintImmediately(newX, newY, TILE_SIZE, TILE_SIZE);
+        }
+    }
+
+    // Starts a new game on a fresh seed; called with the engine's monitor held
+    private void restartGame() {
+        engine.restart(ThreadLocalRandom.current().nextLong());
+        recorder = new ReplayRecorder(engine);
+        awaitedDirection = ' ';
+        gameOverTicks = 0;
+        synchronized (this) {
+            pendingDirection = ' ';
+        }
+        repaint();
+    }
+
+    @Override
+    public void keyTyped(KeyEvent e) {}
+
+    @Override
+    public void keyPressed(KeyEvent e) {
+        synchronized (engine) {
+            if (e.getKeyCode() == KeyEvent.VK_BACK_SPACE && snapshots != null) {
+                if (snapshots.restore(engine, engine.tickCount - REWIND_TICKS)) {
+                    recorder = null; // The replay could no longer be played back from the seed
+                    awaitedDirection = ' ';
+                    repaint();
+                }
+                return;
+            }
+            if (engine.isGameOver) {
+                restartGame();
+                return;
+            }
+        }
+
+        char requestedDirection = switch (e.getKeyCode()) {
+            case KeyEvent.VK_UP -> 'U';
+            case KeyEvent.VK_DOWN -> 'D';
+            case KeyEvent.VK_LEFT -> 'L';
+            case KeyEvent.VK_RIGHT -> 'R';
+            default -> ' ';
+        };
+
+        if (requestedDirection != ' ') {
+            synchronized (this) {
+                pendingDirection = requestedDirection;
+                pendingSince = System.nanoTime();
+            }
+        }
+    }
+
+    @Override
+    public void keyReleased(KeyEvent e) {}
+}
@@ -0,0 +1,7 @@
+package pacman;
+
+// Stands in for the keyboard when a game is played without a player
+public interface PacmanPolicy {
+    // Returns the direction to request this tick, or ' ' for none
+    char nextDirection(GameEngine engine);
+}
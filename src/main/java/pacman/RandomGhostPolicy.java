@@ -0,0 +1,48 @@
+package pacman;
+
+import java.util.Random;
+
+// The classic random walk: a fixed chance of picking a random open direction at each intersection
+public class RandomGhostPolicy implements GhostPolicy {
+    private final int turnChance; // Percent
+
+    public RandomGhostPolicy() {
+        this(25);
+    }
+
+    public RandomGhostPolicy(int turnChance) {
+        this.turnChance = turnChance;
+    }
+
+    @Override
+    public int atIntersection(GameEngine engine, int ghost, int openDirections, Random random) {
+        if (random.nextInt(100) < turnChance) {
+            return randomOpenDirection(openDirections, random);
+        }
+        return GameEngine.NO_DIRECTION;
+    }
+
+    @Override
+    public int afterCollision(GameEngine engine, int ghost, int openDirections, Random random) {
+        return randomOpenDirection(openDirections, random);
+    }
+
+    @Override
+    public boolean parallelSafe() {
+        return true;
+    }
+
+    @Override
+    public String spec() {
+        return "random:" + turnChance;
+    }
+
+    // Picks uniformly among the open directions in one draw instead of re-rolling blocked ones
+    static int randomOpenDirection(int openDirections, Random random) {
+        int count = Integer.bitCount(openDirections);
+        if (count == 0) {
+            return GameEngine.NO_DIRECTION;
+        }
+        return GameEngine.nthOpenDirection(openDirections, random.nextInt(count));
+    }
+}
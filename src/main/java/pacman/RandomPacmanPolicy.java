@@ -0,0 +1,27 @@
+package pacman;
+
+import java.util.Random;
+
+// Requests a random direction every few ticks, like a player mashing the arrow keys
+public class RandomPacmanPolicy implements PacmanPolicy {
+    private final char[] directions = {'U', 'D', 'L', 'R'};
+    private final Random random;
+    private final int interval;
+
+    public RandomPacmanPolicy(long seed) {
+        this(seed, 8);
+    }
+
+    public RandomPacmanPolicy(long seed, int interval) {
+        this.random = new Random(seed);
+        this.interval = interval;
+    }
+
+    @Override
+    public char nextDirection(GameEngine engine) {
+        if (engine.tickCount % interval == 0) {
+            return directions[random.nextInt(4)];
+        }
+        return ' ';
+    }
+}
@@ -0,0 +1,70 @@
+package pacman;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Lets connected players steer ghosts. A controlled ghost takes its player's requested direction
+// whenever that way is open; uncontrolled ghosts are left to the fallback policy.
+public class RemoteGhostPolicy implements GhostPolicy {
+    private final GhostPolicy fallback;
+    private boolean[] controlled = new boolean[0];
+    private byte[] requested = new byte[0];
+
+    public RemoteGhostPolicy(GhostPolicy fallback) {
+        this.fallback = fallback;
+    }
+
+    void setControlled(int ghost, boolean isControlled) {
+        grow(ghost);
+        controlled[ghost] = isControlled;
+        requested[ghost] = GameEngine.NO_DIRECTION;
+    }
+
+    void request(int ghost, int direction) {
+        grow(ghost);
+        requested[ghost] = (byte) direction;
+    }
+
+    @Override
+    public int atIntersection(GameEngine engine, int ghost, int openDirections, Random random) {
+        if (!isControlled(ghost)) {
+            return fallback.atIntersection(engine, ghost, openDirections, random);
+        }
+        return requestedIfOpen(ghost, openDirections);
+    }
+
+    @Override
+    public int afterCollision(GameEngine engine, int ghost, int openDirections, Random random) {
+        int direction = isControlled(ghost) ? requestedIfOpen(ghost, openDirections) : GameEngine.NO_DIRECTION;
+        if (direction == GameEngine.NO_DIRECTION) {
+            direction = fallback.afterCollision(engine, ghost, openDirections, random);
+        }
+        return direction;
+    }
+
+    @Override
+    public String spec() {
+        return fallback.spec(); // Player input is not part of the replay format
+    }
+
+    private boolean isControlled(int ghost) {
+        return ghost < controlled.length && controlled[ghost];
+    }
+
+    private int requestedIfOpen(int ghost, int openDirections) {
+        int direction = requested[ghost];
+        if (direction != GameEngine.NO_DIRECTION && (openDirections & (1 << direction)) != 0) {
+            return direction;
+        }
+        return GameEngine.NO_DIRECTION;
+    }
+
+    private void grow(int ghost) {
+        if (ghost >= controlled.length) {
+            int oldLength = controlled.length;
+            controlled = Arrays.copyOf(controlled, ghost + 1);
+            requested = Arrays.copyOf(requested, ghost + 1);
+            Arrays.fill(requested, oldLength, ghost + 1, GameEngine.NO_DIRECTION);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package pacman;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+// A recorded game: everything needed to rebuild the engine (seed, settings, ghost policy, maze)
+// plus the tick-indexed direction changes, and the final result to check a playback against.
+//
+// File layout, big-endian:
+//   int magic "PMRP", byte version
+//   long seed, int powerPelletDuration, int dotsForCherry, UTF ghost policy spec
+//   int maze byte count, the maze in Maze's binary format
+//   int eventCount, int eventByteCount, events as varints of (ticksSincePreviousEvent << 2 | direction)
+//   long ticks, int score, int lives, int level, int CRC32 of the final engine state
+public class Replay {
+    static final int MAGIC = 0x504D5250; // "PMRP"
+    static final byte VERSION = 7;
+
+    final long seed;
+    final GameSettings settings;
+    final String ghostPolicy;
+    final Maze maze;
+
+    final long[] eventTicks;
+    final byte[] eventDirections; // Indexes into GameEngine.ghostDirections
+
+    final long ticks;
+    final int score;
+    final int lives;
+    final int level;
+    final int stateChecksum;
+
+    Replay(long seed, GameSettings settings, String ghostPolicy, Maze maze,
+           long[] eventTicks, byte[] eventDirections,
+           long ticks, int score, int lives, int level, int stateChecksum) {
+        this.seed = seed;
+        this.settings = settings;
+        this.ghostPolicy = ghostPolicy;
+        this.maze = maze;
+        this.eventTicks = eventTicks;
+        this.eventDirections = eventDirections;
+        this.ticks = ticks;
+        this.score = score;
+        this.lives = lives;
+        this.level = level;
+        this.stateChecksum = stateChecksum;
+    }
+
+    // A fresh engine in the state the recorded game started from
+    public GameEngine newEngine() {
+        return new GameEngine(maze, seed, settings, GhostPolicy.fromSpec(ghostPolicy));
+    }
+
+    public int eventCount() {
+        return eventTicks.length;
+    }
+
+    static int stateChecksum(GameEngine engine) {
+        CRC32 crc = new CRC32();
+        crc.update(engine.snapshot());
+        return (int) crc.getValue();
+    }
+
+    public void save(Path path) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+            write(out);
+        }
+    }
+
+    public static Replay load(Path path) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            return read(in);
+        }
+    }
+
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(seed);
+        out.writeInt(settings.powerPelletDuration());
+        out.writeInt(settings.dotsForCherry());
+        out.writeUTF(ghostPolicy);
+        byte[] mazeBytes = maze.toBytes();
+        out.writeInt(mazeBytes.length);
+        out.write(mazeBytes);
+
+        byte[] events = new byte[eventTicks.length * 10];
+        int length = 0;
+        long previousTick = 0;
+        for (int i = 0; i < eventTicks.length; i++) {
+            length = putVarLong(events, length, (eventTicks[i] - previousTick) << 2 | eventDirections[i]);
+            previousTick = eventTicks[i];
+        }
+        out.writeInt(eventTicks.length);
+        out.writeInt(length);
+        out.write(events, 0, length);
+
+        out.writeLong(ticks);
+        out.writeInt(score);
+        out.writeInt(lives);
+        out.writeInt(level);
+        out.writeInt(stateChecksum);
+        out.flush();
+    }
+
+    public static Replay read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a replay file");
+        }
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported replay version " + version);
+        }
+        long seed = in.readLong();
+        GameSettings settings = new GameSettings(in.readInt(), in.readInt());
+        String ghostPolicy = in.readUTF();
+        byte[] mazeBytes = readBlock(in, "maze");
+        Maze maze;
+        try {
+            maze = Maze.read(ByteBuffer.wrap(mazeBytes));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid maze in replay: " + e.getMessage(), e);
+        }
+
+        int eventCount = in.readInt();
+        byte[] events = readBlock(in, "events");
+        if (eventCount < 0 || eventCount > events.length) {
+            throw new IOException("Bad replay event count " + eventCount); // Every event takes a byte at least
+        }
+        long[] eventTicks = new long[eventCount];
+        byte[] eventDirections = new byte[eventCount];
+        int position = 0;
+        long tick = 0;
+        for (int i = 0; i < eventCount; i++) {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (position == events.length) {
+                    throw new IOException("Truncated replay events");
+                }
+                if (shift > 63) {
+                    throw new IOException("Bad replay event " + i);
+                }
+                b = events[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            tick += value >>> 2;
+            eventTicks[i] = tick;
+            eventDirections[i] = (byte) (value & 3);
+        }
+
+        return new Replay(seed, settings, ghostPolicy, maze, eventTicks, eventDirections,
+                in.readLong(), in.readInt(), in.readInt(), in.readInt(), in.readInt());
+    }
+
+    // An int length and that many bytes. The array grows with the bytes actually read, so a
+    // corrupt or hostile length cannot allocate more than the stream holds.
+    private static byte[] readBlock(DataInputStream in, String what) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Bad replay " + what + " length " + length);
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new IOException("Truncated replay " + what);
+        }
+        return bytes;
+    }
+
+    // Little-endian base-128 varint, at most 10 bytes
+    static int putVarLong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+}
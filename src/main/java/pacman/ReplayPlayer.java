@@ -0,0 +1,105 @@
+package pacman;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Plays a Replay back on a headless engine as fast as it can step. Engine snapshots taken every
+// snapshotInterval ticks on the way make seeking cost at most one interval of stepping.
+public class ReplayPlayer {
+    static final int DEFAULT_SNAPSHOT_INTERVAL = 600; // 30 seconds of play
+
+    private final Replay replay;
+    private final GameEngine engine;
+    private final int snapshotInterval;
+    private final List<byte[]> snapshots = new ArrayList<>(); // Entry i is the state at tick i * snapshotInterval
+    private int nextEvent = 0;
+
+    public ReplayPlayer(Replay replay) {
+        this(replay, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    public ReplayPlayer(Replay replay, int snapshotInterval) {
+        this.replay = replay;
+        this.snapshotInterval = snapshotInterval;
+        this.engine = replay.newEngine();
+        snapshots.add(engine.snapshot());
+    }
+
+    public GameEngine engine() {
+        return engine;
+    }
+
+    public long tick() {
+        return engine.tickCount;
+    }
+
+    public boolean isFinished() {
+        return engine.isGameOver || engine.tickCount >= replay.ticks;
+    }
+
+    // Advances one tick, feeding the recorded direction if there is one
+    public void step() {
+        char input = ' ';
+        while (nextEvent < replay.eventTicks.length && replay.eventTicks[nextEvent] <= engine.tickCount) {
+            if (replay.eventTicks[nextEvent] == engine.tickCount) {
+                input = GameEngine.ghostDirections[replay.eventDirections[nextEvent]];
+            }
+            nextEvent++;
+        }
+        engine.step(input);
+
+        if (engine.tickCount % snapshotInterval == 0 && engine.tickCount / snapshotInterval == snapshots.size()) {
+            snapshots.add(engine.snapshot());
+        }
+    }
+
+    // Steps forward until the given tick or the end of the recording
+    public void playTo(long tick) {
+        long end = Math.min(tick, replay.ticks);
+        while (engine.tickCount < end && !engine.isGameOver) {
+            step();
+        }
+    }
+
+    public void playToEnd() {
+        playTo(replay.ticks);
+    }
+
+    // Moves to any tick, backwards or forwards, from the closest snapshot at or before it
+    public void seek(long tick) {
+        tick = Math.max(0, Math.min(tick, replay.ticks));
+        int snapshot = (int) Math.min(tick / snapshotInterval, snapshots.size() - 1);
+        long snapshotTick = (long) snapshot * snapshotInterval;
+        if (tick < engine.tickCount || snapshotTick > engine.tickCount) {
+            engine.restore(snapshots.get(snapshot));
+            int index = Arrays.binarySearch(replay.eventTicks, snapshotTick);
+            nextEvent = index >= 0 ? index : -index - 1;
+        }
+        playTo(tick);
+    }
+
+    // Whether playing the whole recording reproduces its result bit for bit
+    public boolean verify() {
+        playToEnd();
+        return engine.tickCount == replay.ticks
+                && engine.score == replay.score
+                && engine.lives == replay.lives
+                && engine.level == replay.level
+                && Replay.stateChecksum(engine) == replay.stateChecksum;
+    }
+
+    // Arguments: replay file. Verifies the recording and reports how fast it played back.
+    public static void main(String[] args) throws IOException {
+        Replay replay = Replay.load(Path.of(args[0]));
+        ReplayPlayer player = new ReplayPlayer(replay);
+        long start = System.nanoTime();
+        boolean valid = player.verify();
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%s: %d ticks, %d inputs, score %d, level %d, %s, played in %.1f ms%n",
+                args[0], replay.ticks, replay.eventCount(), replay.score, replay.level,
+                valid ? "verified" : "MISMATCH", elapsed / 1e6);
+    }
+}
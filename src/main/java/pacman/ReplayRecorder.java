@@ -0,0 +1,54 @@
+package pacman;
+
+import java.util.Arrays;
+
+// Collects the direction changes fed into one game of an engine, from its start to its end.
+// Create it right after the engine starts (or restarts) a game and call record() before
+// every step that gets a direction.
+public class ReplayRecorder {
+    private final long seed;
+    private final GameSettings settings;
+    private final String ghostPolicy;
+    private final Maze maze;
+
+    private long[] eventTicks = new long[256];
+    private byte[] eventDirections = new byte[256];
+    private int eventCount = 0;
+
+    public ReplayRecorder(GameEngine engine) {
+        this.seed = engine.seed;
+        this.settings = engine.settings;
+        this.ghostPolicy = engine.ghostPolicy.spec();
+        this.maze = engine.maze;
+    }
+
+    // Records a direction ('U', 'D', 'L' or 'R') passed to step() at the given tick
+    public void record(long tick, char direction) {
+        if (direction == ' ') {
+            return;
+        }
+        int index = GameEngine.directionIndex(direction);
+        if (eventCount > 0 && eventTicks[eventCount - 1] == tick) {
+            eventDirections[eventCount - 1] = (byte) index; // Only the last one of a tick counts
+            return;
+        }
+        if (eventCount == eventTicks.length) {
+            eventTicks = Arrays.copyOf(eventTicks, eventCount * 2);
+            eventDirections = Arrays.copyOf(eventDirections, eventCount * 2);
+        }
+        eventTicks[eventCount] = tick;
+        eventDirections[eventCount] = (byte) index;
+        eventCount++;
+    }
+
+    public int eventCount() {
+        return eventCount;
+    }
+
+    // The recording so far, with the engine's current state as the result to verify against
+    public Replay finish(GameEngine engine) {
+        return new Replay(seed, settings, ghostPolicy, maze,
+                Arrays.copyOf(eventTicks, eventCount), Arrays.copyOf(eventDirections, eventCount),
+                engine.tickCount, engine.score, engine.lives, engine.level, Replay.stateChecksum(engine));
+    }
+}
@@ -0,0 +1,37 @@
+package pacman;
+
+import java.util.Arrays;
+
+// Keeps the most recent samples (e.g. durations in nanoseconds) for percentile queries
+public class SampleWindow {
+    private final long[] samples;
+    private int next = 0;
+    private long count = 0;
+
+    public SampleWindow(int capacity) {
+        samples = new long[capacity];
+    }
+
+    public synchronized void record(long sample) {
+        samples[next] = sample;
+        next = (next + 1) % samples.length;
+        count++;
+    }
+
+    // Total number of samples ever recorded
+    public synchronized long count() {
+        return count;
+    }
+
+    // Value at the given percentile (0-100) of the retained samples, 0 when empty
+    public synchronized long percentile(double percentile) {
+        int size = (int) Math.min(count, samples.length);
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * size) - 1;
+        return sorted[Math.max(0, Math.min(index, size - 1))];
+    }
+}
@@ -0,0 +1,302 @@
+package pacman;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Plays pacman by Monte Carlo tree search over copies of the game. Each call copies the engine
+// state once, then every searcher restores it into its own engine and runs UCT iterations until
+// the time budget or iteration limit runs out: pick directions down a tree whose edges are one
+// direction request followed by DECISION_TICKS ticks, add one node, play random directions to the
+// horizon and score the outcome. The searchers' trees are independent (root parallelism) and their
+// root counts are added up to pick the most visited direction.
+//
+// A search allocates nothing: trees live in preallocated arrays and copies are restored in place
+// with readState(). The calling thread searches too, alongside threads - 1 parked workers.
+public class SearchPacmanPolicy implements PacmanPolicy, AutoCloseable {
+    static final int DECISION_TICKS = 4; // About one tile of movement
+    private static final int MAX_DEPTH = 6; // Tree decisions, so a plan looks MAX_DEPTH * DECISION_TICKS ticks ahead
+    private static final int ROLLOUT_DECISIONS = 8; // Random decisions after leaving the tree
+    private static final int MAX_NODES = 1 << 14; // Per searcher
+    private static final double EXPLORATION = 1.4;
+    private static final double SCORE_SCALE = 200; // Score gain worth half the available reward
+
+    private final long budgetNanos;
+    private final int maxIterations;
+    private final Searcher[] searchers;
+    private final Thread[] workers;
+
+    // Published to the workers by bumping generation
+    private byte[] rootState = new byte[0];
+    private int rootScore;
+    private int rootLives;
+    private int rootLevel;
+    private long deadline;
+    private final AtomicInteger pendingSearchers = new AtomicInteger();
+    private volatile int generation = 0;
+    private volatile boolean closed = false;
+    private volatile Thread caller;
+
+    private long iterations = 0; // Total over all searches, for reporting
+
+    // budgetMillis of thinking per call on threads threads, each stopping early after maxIterations
+    public SearchPacmanPolicy(long budgetMillis, int maxIterations, int threads) {
+        this.budgetNanos = budgetMillis * 1_000_000L;
+        this.maxIterations = maxIterations;
+        searchers = new Searcher[Math.max(1, threads)];
+        for (int i = 0; i < searchers.length; i++) {
+            searchers[i] = new Searcher(i);
+        }
+        workers = new Thread[searchers.length - 1];
+        for (int i = 0; i < workers.length; i++) {
+            Searcher searcher = searchers[i + 1];
+            workers[i] = new Thread(() -> work(searcher), "pacman-search-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    public SearchPacmanPolicy(long budgetMillis) {
+        this(budgetMillis, Integer.MAX_VALUE, Runtime.getRuntime().availableProcessors());
+    }
+
+    public long iterations() {
+        return iterations;
+    }
+
+    @Override
+    public char nextDirection(GameEngine engine) {
+        if (engine.isGameOver) {
+            return ' ';
+        }
+        if (rootState.length != engine.stateSize()) {
+            rootState = new byte[engine.stateSize()];
+        }
+        engine.writeState(ByteBuffer.wrap(rootState));
+        rootScore = engine.score;
+        rootLives = engine.lives;
+        rootLevel = engine.level;
+        for (Searcher searcher : searchers) {
+            searcher.prepare(engine, rootState);
+        }
+        deadline = System.nanoTime() + budgetNanos;
+
+        caller = Thread.currentThread();
+        pendingSearchers.set(workers.length);
+        generation++;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+        searchers[0].search();
+        while (pendingSearchers.get() > 0) {
+            LockSupport.park(this);
+        }
+
+        // The most visited first move over all trees
+        int best = -1;
+        long bestVisits = 0;
+        for (int action = 0; action < 4; action++) {
+            long visits = 0;
+            for (Searcher searcher : searchers) {
+                visits += searcher.rootVisits(action);
+            }
+            if (visits > bestVisits) {
+                bestVisits = visits;
+                best = action;
+            }
+        }
+        for (Searcher searcher : searchers) {
+            iterations += searcher.iterations;
+        }
+        return best < 0 ? ' ' : GameEngine.ghostDirections[best];
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    private void work(Searcher searcher) {
+        int seen = 0;
+        while (!closed) {
+            int current = generation;
+            if (current == seen) {
+                LockSupport.park(this);
+                continue;
+            }
+            seen = current;
+            searcher.search();
+            if (pendingSearchers.decrementAndGet() == 0) {
+                LockSupport.unpark(caller);
+            }
+        }
+    }
+
+    // One search tree and the engine its iterations play on. Node 0 is the root; children holds
+    // four child indexes per node, 0 where the child has not been added yet.
+    private final class Searcher {
+        private final GameRandom random;
+        private final int[] children = new int[MAX_NODES * 4];
+        private final int[] visits = new int[MAX_NODES];
+        private final double[] rewards = new double[MAX_NODES];
+        private final int[] path = new int[MAX_DEPTH + 1];
+        private GameEngine copy;
+        private ByteBuffer root;
+        private int nodeCount;
+        private int ticksPlayed;
+        int iterations;
+
+        Searcher(int index) {
+            random = new GameRandom(0x5EA4C4L * (index + 1));
+        }
+
+        // Called by the caller before the workers are released
+        void prepare(GameEngine engine, byte[] rootState) {
+            if (copy == null || copy.maze != engine.maze || copy.settings != engine.settings) {
+                copy = new GameEngine(engine.maze, engine.seed, engine.settings,
+                        GhostPolicy.fromSpec(engine.ghostPolicy.spec()));
+            }
+            if (root == null || root.array() != rootState) {
+                root = ByteBuffer.wrap(rootState);
+            }
+        }
+
+        int rootVisits(int action) {
+            int child = children[action];
+            return child == 0 ? 0 : visits[child];
+        }
+
+        void search() {
+            nodeCount = 1;
+            visits[0] = 0;
+            rewards[0] = 0;
+            children[0] = children[1] = children[2] = children[3] = 0;
+            iterations = 0;
+            while (iterations < maxIterations && System.nanoTime() - deadline < 0) {
+                iterate();
+                iterations++;
+            }
+        }
+
+        private void iterate() {
+            root.clear();
+            copy.readState(root);
+            ticksPlayed = 0;
+
+            // Down the tree, adding the first missing child on the way
+            int node = 0;
+            int depth = 0;
+            path[0] = 0;
+            boolean alive = true;
+            while (alive && depth < MAX_DEPTH) {
+                int base = node * 4;
+                int start = random.nextInt(4);
+                int action = -1;
+                for (int i = 0; i < 4; i++) {
+                    int candidate = (start + i) & 3;
+                    if (children[base + candidate] == 0) {
+                        action = candidate;
+                        break;
+                    }
+                }
+                int child;
+                if (action >= 0) {
+                    if (nodeCount == MAX_NODES) {
+                        break;
+                    }
+                    child = nodeCount++;
+                    children[child * 4] = children[child * 4 + 1] = children[child * 4 + 2] = children[child * 4 + 3] = 0;
+                    visits[child] = 0;
+                    rewards[child] = 0;
+                    children[base + action] = child;
+                } else {
+                    action = selectChild(node);
+                    child = children[base + action];
+                }
+                alive = play(action);
+                path[++depth] = child;
+                node = child;
+                if (visits[child] == 0) {
+                    break; // Just added: evaluate it with a rollout
+                }
+            }
+
+            // Random directions to the horizon
+            for (int i = 0; alive && i < ROLLOUT_DECISIONS; i++) {
+                alive = play(random.nextInt(4));
+            }
+
+            double reward = reward(alive);
+            for (int i = 0; i <= depth; i++) {
+                visits[path[i]]++;
+                rewards[path[i]] += reward;
+            }
+        }
+
+        // UCB1 over a node whose four children all exist
+        private int selectChild(int node) {
+            double logVisits = Math.log(visits[node] + 1);
+            int best = 0;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int action = 0; action < 4; action++) {
+                int child = children[node * 4 + action];
+                double score = rewards[child] / visits[child] + EXPLORATION * Math.sqrt(logVisits / visits[child]);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = action;
+                }
+            }
+            return best;
+        }
+
+        // Requests a direction and plays DECISION_TICKS ticks; false once pacman was caught or the
+        // level ended, which ends the iteration
+        private boolean play(int action) {
+            GameEngine engine = copy;
+            engine.step(GameEngine.ghostDirections[action]);
+            ticksPlayed++;
+            for (int tick = 1; tick < DECISION_TICKS && engine.lives == rootLives && engine.level == rootLevel; tick++) {
+                engine.step(' ');
+                ticksPlayed++;
+            }
+            return engine.lives == rootLives && engine.level == rootLevel && !engine.isGameOver;
+        }
+
+        // 0 to 1: being caught is worth at most 0.25, more for surviving longer; otherwise at
+        // least 0.4, rising with the score gained, and clearing the level is worth everything
+        private double reward(boolean alive) {
+            GameEngine engine = copy;
+            if (engine.level != rootLevel && !engine.isGameOver) {
+                return 1;
+            }
+            if (!alive) {
+                return 0.25 * ticksPlayed / ((MAX_DEPTH + ROLLOUT_DECISIONS) * DECISION_TICKS);
+            }
+            double gain = engine.score - rootScore;
+            return 0.4 + 0.6 * gain / (gain + SCORE_SCALE);
+        }
+    }
+
+    // Arguments: games, milliseconds per move, threads. Plays whole games and reports how they went.
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        long budgetMillis = args.length > 1 ? Long.parseLong(args[1]) : 10;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        try (SearchPacmanPolicy policy = new SearchPacmanPolicy(budgetMillis, Integer.MAX_VALUE, threads)) {
+            for (int game = 0; game < games; game++) {
+                GameEngine engine = new GameEngine(game);
+                long start = System.nanoTime();
+                long startIterations = policy.iterations();
+                while (!engine.isGameOver && engine.tickCount < 20_000) {
+                    engine.step(policy.nextDirection(engine));
+                }
+                System.out.printf("game %d: score %d, level %d, %d ticks in %.1f s, %.0f iterations per move%n",
+                        game, engine.score, engine.level, engine.tickCount, (System.nanoTime() - start) / 1e9,
+                        (policy.iterations() - startIterations) / (double) engine.tickCount);
+            }
+        }
+    }
+}
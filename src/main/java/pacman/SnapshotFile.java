@@ -0,0 +1,451 @@
+package pacman;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+// A memory-mapped history of engine states, for resuming after a crash or power loss and for
+// rewinding while debugging. save() appends the engine's writeState() bytes as a record; only
+// the 16-byte blocks that changed since the previous save get written, with a full keyframe
+// every 64 records or when a delta would not be much smaller. Saving allocates nothing.
+//
+// The journal is split into segments that are used round-robin, each starting with a keyframe,
+// so the oldest segment can be overwritten without breaking the chains in the others. Records
+// carry a sequence number and a CRC32, so a record torn by a crash is simply not there when the
+// file is opened again. A sync thread forces the mapped pages to disk every second, so a crash
+// loses at most about a second of history; close() forces whatever is left.
+//
+// File layout, big-endian:
+//   int magic "PMSS", byte version
+//   int state size, int segment count, int segment size
+//   int powerPelletDuration, int dotsForCherry, UTF ghost policy spec
+//   int maze byte count, the maze in Maze's binary format
+//   segments, starting at the first 4096-byte boundary after the header
+// Record: int length, long sequence, long tick, byte kind, payload, int CRC32 of sequence to payload.
+// A keyframe's payload is the state; a delta's is runs of varint blocks skipped, varint blocks
+// changed, changed bytes. A zero length ends a segment's records.
+//
+// Not thread safe apart from the sync thread; the GUI calls it while holding the engine's monitor
+// like everything else.
+public class SnapshotFile implements AutoCloseable {
+    static final int MAGIC = 0x504D5353; // "PMSS"
+    static final byte VERSION = 4;
+    static final int DEFAULT_SEGMENTS = 8;
+
+    private static final int BLOCK = 16;
+    private static final int KEYFRAME_INTERVAL = 64; // Bounds the deltas a rewind has to apply
+    private static final int RECORD_HEADER = 4 + 8 + 8 + 1;
+    private static final int RECORD_TRAILER = 4;
+    private static final byte KEYFRAME = 0;
+    private static final byte DELTA = 1;
+    private static final long SYNC_NANOS = 1_000_000_000L;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int journalStart;
+    private final int segmentCount;
+    private final int segmentSize;
+    private final int stateSize;
+
+    final GameSettings settings;
+    final String ghostPolicy;
+    final Maze maze;
+
+    // Index of the records in each segment, in write order
+    private final long[][] ticks;
+    private final int[][] offsets;
+    private final int[] counts;
+
+    private int segment = 0; // Being written
+    private int position; // Next record in the file
+    private long nextSequence = 1;
+    private int sinceKeyframe = KEYFRAME_INTERVAL;
+
+    private final byte[] saved; // State of the last record
+    private final byte[] state; // Scratch for captures and rebuilds
+    private final ByteBuffer stateBuffer;
+    private final byte[] record;
+    private final ByteBuffer recordBuffer;
+    private final CRC32 crc = new CRC32();
+
+    private final Thread syncer;
+    private volatile boolean closed = false;
+
+    private SnapshotFile(FileChannel channel, MappedByteBuffer map, int journalStart,
+                         int segmentCount, int segmentSize, int stateSize,
+                         GameSettings settings, String ghostPolicy, Maze maze) {
+        this.channel = channel;
+        this.map = map;
+        this.journalStart = journalStart;
+        this.segmentCount = segmentCount;
+        this.segmentSize = segmentSize;
+        this.stateSize = stateSize;
+        this.settings = settings;
+        this.ghostPolicy = ghostPolicy;
+        this.maze = maze;
+
+        ticks = new long[segmentCount][16];
+        offsets = new int[segmentCount][16];
+        counts = new int[segmentCount];
+        saved = new byte[stateSize];
+        state = new byte[stateSize];
+        stateBuffer = ByteBuffer.wrap(state);
+        // A delta is never kept when larger than half the state, but is built in full first
+        record = new byte[RECORD_HEADER + stateSize * 2 + 64 + RECORD_TRAILER];
+        recordBuffer = ByteBuffer.wrap(record);
+        position = segmentStart(0);
+        syncer = new Thread(this::sync, "snapshot-sync");
+        syncer.setDaemon(true);
+    }
+
+    // Creates (or replaces) a file for an engine's game, with room for about historyBytes of records
+    public static SnapshotFile create(Path path, GameEngine engine, int historyBytes) throws IOException {
+        int stateSize = engine.stateSize();
+        int segmentSize = Math.max(historyBytes / DEFAULT_SEGMENTS, 4 * (RECORD_HEADER + stateSize + RECORD_TRAILER));
+        segmentSize = (segmentSize + 4095) & ~4095;
+
+        ByteBuffer header = header(engine, stateSize, DEFAULT_SEGMENTS, segmentSize);
+        int journalStart = (header.remaining() + 4095) & ~4095;
+        long fileSize = journalStart + (long) DEFAULT_SEGMENTS * segmentSize;
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("History too large: " + historyBytes + " bytes");
+        }
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            map.put(0, header, 0, header.remaining());
+            SnapshotFile file = new SnapshotFile(channel, map, journalStart, DEFAULT_SEGMENTS, segmentSize, stateSize,
+                    engine.settings, engine.ghostPolicy.spec(), engine.maze);
+            file.syncer.start();
+            return file;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Opens an existing file and recovers every intact record in it
+    public static SnapshotFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            ByteBuffer in = map.duplicate();
+            if (in.remaining() < 5 || in.getInt() != MAGIC) {
+                throw new IOException("Not a snapshot file");
+            }
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot file version " + version);
+            }
+            int stateSize = in.getInt();
+            int segmentCount = in.getInt();
+            int segmentSize = in.getInt();
+            GameSettings settings = new GameSettings(in.getInt(), in.getInt());
+            byte[] spec = new byte[in.getShort() & 0xFFFF];
+            in.get(spec);
+            byte[] mazeBytes = new byte[in.getInt()];
+            in.get(mazeBytes);
+            Maze maze = Maze.read(ByteBuffer.wrap(mazeBytes));
+            int journalStart = (in.position() + 4095) & ~4095;
+            if (stateSize <= 0 || segmentCount <= 0 || segmentSize <= 0
+                    || journalStart + (long) segmentCount * segmentSize > channel.size()) {
+                throw new IOException("Truncated snapshot file");
+            }
+
+            SnapshotFile file = new SnapshotFile(channel, map, journalStart, segmentCount, segmentSize, stateSize,
+                    settings, new String(spec, StandardCharsets.UTF_8), maze);
+            file.recover();
+            file.syncer.start();
+            return file;
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            channel.close();
+            throw new IOException("Corrupt snapshot file: " + e.getMessage(), e);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Appends the engine's current state and returns its tick
+    public long save(GameEngine engine) {
+        if (engine.stateSize() != stateSize) {
+            throw new IllegalArgumentException("Engine state is " + engine.stateSize()
+                    + " bytes, this file holds " + stateSize);
+        }
+        stateBuffer.clear();
+        engine.writeState(stateBuffer);
+
+        boolean keyframe = counts[segment] == 0 || sinceKeyframe >= KEYFRAME_INTERVAL;
+        int length = keyframe ? keyframeLength() : deltaLength();
+        if (!keyframe && length > RECORD_HEADER + stateSize / 2 + RECORD_TRAILER) {
+            keyframe = true;
+            length = keyframeLength();
+        }
+        if (position + length + 4 > segmentEnd(segment)) {
+            // Moving on drops the oldest segment, whose records now get overwritten
+            segment = (segment + 1) % segmentCount;
+            counts[segment] = 0;
+            position = segmentStart(segment);
+            keyframe = true;
+            length = keyframeLength();
+        }
+
+        long sequence = nextSequence++;
+        ByteBuffer header = recordBuffer.clear();
+        header.putInt(length).putLong(sequence).putLong(engine.tickCount).put(keyframe ? KEYFRAME : DELTA);
+        crc.reset();
+        crc.update(record, 4, length - 4 - RECORD_TRAILER);
+        header.putInt(length - RECORD_TRAILER, (int) crc.getValue());
+        // The zero length after the record marks the end of the segment's records
+        map.putInt(position + length, 0);
+        map.put(position, record, 0, length);
+
+        int count = counts[segment];
+        if (count == ticks[segment].length) {
+            ticks[segment] = Arrays.copyOf(ticks[segment], count * 2);
+            offsets[segment] = Arrays.copyOf(offsets[segment], count * 2);
+        }
+        ticks[segment][count] = engine.tickCount;
+        offsets[segment][count] = position;
+        counts[segment] = count + 1;
+        position += length;
+        sinceKeyframe = keyframe ? 1 : sinceKeyframe + 1;
+        System.arraycopy(state, 0, saved, 0, stateSize);
+        return engine.tickCount;
+    }
+
+    // Puts the engine back to the most recently saved state at or before the tick. Returns false,
+    // leaving the engine alone, if nothing that old is left.
+    public boolean restore(GameEngine engine, long tick) {
+        for (int i = 0; i < segmentCount; i++) {
+            int s = Math.floorMod(segment - i, segmentCount);
+            for (int index = counts[s] - 1; index >= 0; index--) {
+                if (ticks[s][index] <= tick) {
+                    rebuild(s, index);
+                    stateBuffer.clear();
+                    engine.readState(stateBuffer);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // A new engine in the last saved state, or null if nothing was saved yet
+    public GameEngine resume() {
+        GameEngine engine = new GameEngine(maze, 0, settings, GhostPolicy.fromSpec(ghostPolicy));
+        return restore(engine, Long.MAX_VALUE) ? engine : null;
+    }
+
+    public int snapshotCount() {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    // Tick of the oldest snapshot still kept, or -1 when empty
+    public long oldestTick() {
+        for (int i = segmentCount - 1; i >= 0; i--) {
+            int s = Math.floorMod(segment - i, segmentCount);
+            if (counts[s] > 0) {
+                return ticks[s][0];
+            }
+        }
+        return -1;
+    }
+
+    // Tick of the last snapshot, or -1 when empty
+    public long latestTick() {
+        int count = counts[segment];
+        return count > 0 ? ticks[segment][count - 1] : -1;
+    }
+
+    // Blocks until the mapped pages are on disk
+    public void force() {
+        map.force();
+    }
+
+    // Stops the sync thread and forces what it has not written yet
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(syncer);
+        try {
+            syncer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        map.force();
+        channel.close(); // The mapping stays valid until collected, and its pages still get written back
+    }
+
+    // Runs on the sync thread, so the tick never waits for the disk
+    private void sync() {
+        while (!closed) {
+            LockSupport.parkNanos(this, SYNC_NANOS);
+            map.force();
+        }
+    }
+
+    private int keyframeLength() {
+        System.arraycopy(state, 0, record, RECORD_HEADER, stateSize);
+        return RECORD_HEADER + stateSize + RECORD_TRAILER;
+    }
+
+    // Encodes the blocks that differ from the last saved state into the record, returning its length
+    private int deltaLength() {
+        int out = RECORD_HEADER;
+        int skippedFrom = 0; // Block-aligned end of the previous run
+        int from = 0;
+        while (from < stateSize) {
+            int mismatch = Arrays.mismatch(state, from, stateSize, saved, from, stateSize);
+            if (mismatch < 0) {
+                break;
+            }
+            mismatch += from;
+            int start = mismatch - mismatch % BLOCK;
+            int end = Math.min(start + BLOCK, stateSize);
+            while (end < stateSize) {
+                int next = Math.min(end + BLOCK, stateSize);
+                if (Arrays.equals(state, end, next, saved, end, next)) {
+                    break;
+                }
+                end = next;
+            }
+            out = Replay.putVarLong(record, out, (start - skippedFrom) / BLOCK);
+            out = Replay.putVarLong(record, out, (end - start + BLOCK - 1) / BLOCK);
+            System.arraycopy(state, start, record, out, end - start);
+            out += end - start;
+            skippedFrom = end;
+            from = end;
+        }
+        return out + RECORD_TRAILER;
+    }
+
+    // Rebuilds the state of a record into the scratch state from the nearest keyframe before it
+    private void rebuild(int s, int index) {
+        int key = index;
+        while (map.get(offsets[s][key] + RECORD_HEADER - 1) != KEYFRAME) {
+            key--;
+        }
+        for (int i = key; i <= index; i++) {
+            apply(offsets[s][i]);
+        }
+    }
+
+    private void apply(int offset) {
+        int length = map.getInt(offset);
+        int payload = offset + RECORD_HEADER;
+        int payloadEnd = offset + length - RECORD_TRAILER;
+        if (map.get(payload - 1) == KEYFRAME) {
+            map.get(payload, state, 0, stateSize);
+            return;
+        }
+        int block = 0;
+        int at = payload;
+        while (at < payloadEnd) {
+            long skip = 0;
+            long run = 0;
+            for (int part = 0; part < 2; part++) {
+                long value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = map.get(at++);
+                    value |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                if (part == 0) {
+                    skip = value;
+                } else {
+                    run = value;
+                }
+            }
+            block += (int) skip;
+            int start = block * BLOCK;
+            int end = Math.min(start + (int) run * BLOCK, stateSize);
+            map.get(at, state, start, end - start);
+            at += end - start;
+            block += (int) run;
+        }
+    }
+
+    // Scans every segment for its intact records and continues after the newest one
+    private void recover() {
+        long newest = 0;
+        for (int s = 0; s < segmentCount; s++) {
+            int offset = segmentStart(s);
+            long expected = -1;
+            while (offset + RECORD_HEADER + RECORD_TRAILER <= segmentEnd(s)) {
+                int length = map.getInt(offset);
+                if (length < RECORD_HEADER + RECORD_TRAILER || offset + length > segmentEnd(s)) {
+                    break;
+                }
+                long sequence = map.getLong(offset + 4);
+                byte kind = map.get(offset + RECORD_HEADER - 1);
+                if (expected < 0 ? kind != KEYFRAME : sequence != expected) {
+                    break;
+                }
+                crc.reset();
+                crc.update(map.slice(offset + 4, length - 4 - RECORD_TRAILER));
+                if ((int) crc.getValue() != map.getInt(offset + length - RECORD_TRAILER)) {
+                    break; // Torn by a crash
+                }
+
+                int count = counts[s];
+                if (count == ticks[s].length) {
+                    ticks[s] = Arrays.copyOf(ticks[s], count * 2);
+                    offsets[s] = Arrays.copyOf(offsets[s], count * 2);
+                }
+                ticks[s][count] = map.getLong(offset + 12);
+                offsets[s][count] = offset;
+                counts[s] = count + 1;
+                expected = sequence + 1;
+                offset += length;
+
+                if (sequence > newest) {
+                    newest = sequence;
+                    segment = s;
+                    position = offset;
+                }
+            }
+        }
+        if (newest > 0) {
+            nextSequence = newest + 1;
+            rebuild(segment, counts[segment] - 1);
+            System.arraycopy(state, 0, saved, 0, stateSize);
+        }
+    }
+
+    private int segmentStart(int s) {
+        return journalStart + s * segmentSize;
+    }
+
+    private int segmentEnd(int s) {
+        return segmentStart(s) + segmentSize;
+    }
+
+    private static ByteBuffer header(GameEngine engine, int stateSize, int segmentCount, int segmentSize) {
+        byte[] spec = engine.ghostPolicy.spec().getBytes(StandardCharsets.UTF_8);
+        byte[] mazeBytes = engine.maze.toBytes();
+        ByteBuffer header = ByteBuffer.allocate(4 + 1 + 4 * 3 + 4 * 2 + 2 + spec.length + 4 + mazeBytes.length);
+        header.putInt(MAGIC).put(VERSION);
+        header.putInt(stateSize).putInt(segmentCount).putInt(segmentSize);
+        header.putInt(engine.settings.powerPelletDuration()).putInt(engine.settings.dotsForCherry());
+        header.putShort((short) spec.length).put(spec);
+        header.putInt(mazeBytes.length).put(mazeBytes);
+        return header.flip();
+    }
+}
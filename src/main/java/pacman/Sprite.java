@@ -0,0 +1,29 @@
+package pacman;
+
+// Every sprite the game draws, named after its source PNG. The pacman sprites follow the
+// GameEngine.ghostDirections order so a direction index picks one directly.
+public enum Sprite {
+    WALL("wall"),
+    BLUE_GHOST("blueGhost"),
+    ORANGE_GHOST("orangeGhost"),
+    PINK_GHOST("pinkGhost"),
+    RED_GHOST("redGhost"),
+    SCARED_GHOST("scaredGhost"),
+    PACMAN_UP("pacmanUp"),
+    PACMAN_DOWN("pacmanDown"),
+    PACMAN_LEFT("pacmanLeft"),
+    PACMAN_RIGHT("pacmanRight"),
+    CHERRY("cherry");
+
+    private static final Sprite[] PACMAN = {PACMAN_UP, PACMAN_DOWN, PACMAN_LEFT, PACMAN_RIGHT};
+
+    final String resourceName;
+
+    Sprite(String resourceName) {
+        this.resourceName = resourceName;
+    }
+
+    static Sprite pacman(int direction) {
+        return PACMAN[direction]; // Not values(), which copies the array on every call
+    }
+}
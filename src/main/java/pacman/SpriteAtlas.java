@@ -0,0 +1,148 @@
+package pacman;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+
+// All sprites packed into one image, so startup decodes a single PNG. The build writes
+// atlas.png and atlas.txt ("name x y width height" per line) next to the classes through
+// main(); when they are missing, e.g. running from an IDE, load() packs the single PNGs instead.
+public final class SpriteAtlas {
+    static final String IMAGE_RESOURCE = "/atlas.png";
+    static final String INDEX_RESOURCE = "/atlas.txt";
+    private static final int PADDING = 1;
+
+    final BufferedImage image;
+    private final Rectangle[] regions; // By Sprite ordinal
+
+    private SpriteAtlas(BufferedImage image, Rectangle[] regions) {
+        this.image = image;
+        this.regions = regions;
+    }
+
+    public BufferedImage sprite(Sprite sprite) {
+        Rectangle region = regions[sprite.ordinal()];
+        return image.getSubimage(region.x, region.y, region.width, region.height);
+    }
+
+    static SpriteAtlas load() throws IOException {
+        try (InputStream imageStream = SpriteAtlas.class.getResourceAsStream(IMAGE_RESOURCE);
+             InputStream indexStream = SpriteAtlas.class.getResourceAsStream(INDEX_RESOURCE)) {
+            if (imageStream == null || indexStream == null) {
+                return pack(SpriteAtlas::readResource);
+            }
+            BufferedImage image = ImageIO.read(imageStream);
+            Rectangle[] regions = new Rectangle[Sprite.values().length];
+            BufferedReader index = new BufferedReader(new InputStreamReader(indexStream, StandardCharsets.UTF_8));
+            String line;
+            while ((line = index.readLine()) != null) {
+                String[] fields = line.split(" ");
+                Sprite sprite = spriteNamed(fields[0]);
+                if (sprite != null) {
+                    regions[sprite.ordinal()] = new Rectangle(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                            Integer.parseInt(fields[3]), Integer.parseInt(fields[4]));
+                }
+            }
+            for (Sprite sprite : Sprite.values()) {
+                if (regions[sprite.ordinal()] == null) {
+                    return pack(SpriteAtlas::readResource); // Stale atlas from an older build
+                }
+            }
+            return new SpriteAtlas(image, regions);
+        }
+    }
+
+    interface SpriteSource {
+        BufferedImage read(String resourceName) throws IOException;
+    }
+
+    // Shelf packing, tallest first, into a roughly square image
+    static SpriteAtlas pack(SpriteSource source) throws IOException {
+        Sprite[] sprites = Sprite.values();
+        BufferedImage[] images = new BufferedImage[sprites.length];
+        long area = 0;
+        for (Sprite sprite : sprites) {
+            BufferedImage image = source.read(sprite.resourceName);
+            images[sprite.ordinal()] = image;
+            area += (long) (image.getWidth() + PADDING) * (image.getHeight() + PADDING);
+        }
+
+        Sprite[] order = sprites.clone();
+        Arrays.sort(order, Comparator.comparingInt((Sprite s) -> -images[s.ordinal()].getHeight()));
+        int maxWidth = Arrays.stream(images).mapToInt(BufferedImage::getWidth).max().orElse(0) + PADDING;
+        int width = Math.max(maxWidth, (int) Math.ceil(Math.sqrt(area)));
+
+        Rectangle[] regions = new Rectangle[sprites.length];
+        int x = 0;
+        int y = 0;
+        int shelfHeight = 0;
+        for (Sprite sprite : order) {
+            BufferedImage image = images[sprite.ordinal()];
+            if (x + image.getWidth() > width) {
+                x = 0;
+                y += shelfHeight + PADDING;
+                shelfHeight = 0;
+            }
+            regions[sprite.ordinal()] = new Rectangle(x, y, image.getWidth(), image.getHeight());
+            x += image.getWidth() + PADDING;
+            shelfHeight = Math.max(shelfHeight, image.getHeight());
+        }
+
+        BufferedImage atlas = new BufferedImage(width, y + shelfHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = atlas.createGraphics();
+        for (Sprite sprite : sprites) {
+            Rectangle region = regions[sprite.ordinal()];
+            g.drawImage(images[sprite.ordinal()], region.x, region.y, null);
+        }
+        g.dispose();
+        return new SpriteAtlas(atlas, regions);
+    }
+
+    void write(Path directory) throws IOException {
+        ImageIO.write(image, "png", directory.resolve(IMAGE_RESOURCE.substring(1)).toFile());
+        try (Writer index = Files.newBufferedWriter(directory.resolve(INDEX_RESOURCE.substring(1)))) {
+            for (Sprite sprite : Sprite.values()) {
+                Rectangle region = regions[sprite.ordinal()];
+                index.write(sprite.resourceName + " " + region.x + " " + region.y + " "
+                        + region.width + " " + region.height + "\n");
+            }
+        }
+    }
+
+    private static BufferedImage readResource(String resourceName) throws IOException {
+        try (InputStream in = SpriteAtlas.class.getResourceAsStream("/" + resourceName + ".png")) {
+            if (in == null) {
+                throw new IOException("Missing sprite " + resourceName + ".png");
+            }
+            return ImageIO.read(in);
+        }
+    }
+
+    private static Sprite spriteNamed(String resourceName) {
+        for (Sprite sprite : Sprite.values()) {
+            if (sprite.resourceName.equals(resourceName)) {
+                return sprite;
+            }
+        }
+        return null;
+    }
+
+    // Build step. Arguments: the classes directory holding the single sprite PNGs; the atlas is written there.
+    public static void main(String[] args) throws IOException {
+        Path directory = Path.of(args[0]);
+        SpriteAtlas atlas = pack(name -> ImageIO.read(directory.resolve(name + ".png").toFile()));
+        atlas.write(directory);
+        System.out.println("Packed " + Sprite.values().length + " sprites into a "
+                + atlas.image.getWidth() + "x" + atlas.image.getHeight() + " atlas");
+    }
+}
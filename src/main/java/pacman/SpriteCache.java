@@ -0,0 +1,87 @@
+package pacman;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Process-wide sprite cache. The atlas is decoded once in the background, then scaled once per
+// screen configuration and tile size into compatible images that draw without any scaling.
+// Every renderer, panel and restart shares the same images.
+final class SpriteCache {
+    private record Key(GraphicsConfiguration graphicsConfiguration, int size) {}
+
+    // The sprites at one size, ready for drawImage(image, x, y, observer)
+    static final class Sprites {
+        private final Image[] images;
+
+        private Sprites(Image[] images) {
+            this.images = images;
+        }
+
+        Image get(Sprite sprite) {
+            return images[sprite.ordinal()];
+        }
+    }
+
+    private static final Map<Key, CompletableFuture<Sprites>> scaled = new ConcurrentHashMap<>();
+    private static CompletableFuture<SpriteAtlas> atlas;
+    private static CompletableFuture<Image> icon;
+
+    private SpriteCache() {}
+
+    // Sprites scaled to size x size for the configuration (null when headless), loaded asynchronously
+    static CompletableFuture<Sprites> sprites(GraphicsConfiguration graphicsConfiguration, int size) {
+        return scaled.computeIfAbsent(new Key(graphicsConfiguration, size),
+                key -> atlas().thenApplyAsync(loaded -> scale(loaded, graphicsConfiguration, size)));
+    }
+
+    static synchronized CompletableFuture<Image> icon() {
+        if (icon == null) {
+            icon = CompletableFuture.supplyAsync(() -> {
+                try (InputStream in = SpriteCache.class.getResourceAsStream("/pacmanIcon.png")) {
+                    if (in == null) {
+                        throw new IOException("Missing pacmanIcon.png");
+                    }
+                    return ImageIO.read(in);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        return icon;
+    }
+
+    private static synchronized CompletableFuture<SpriteAtlas> atlas() {
+        if (atlas == null) {
+            atlas = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return SpriteAtlas.load();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        return atlas;
+    }
+
+    private static Sprites scale(SpriteAtlas atlas, GraphicsConfiguration graphicsConfiguration, int size) {
+        Sprite[] sprites = Sprite.values();
+        Image[] images = new Image[sprites.length];
+        for (Sprite sprite : sprites) {
+            BufferedImage image = graphicsConfiguration != null
+                    ? graphicsConfiguration.createCompatibleImage(size, size, Transparency.TRANSLUCENT)
+                    : new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            g.drawImage(atlas.sprite(sprite), 0, 0, size, size, null); // Nearest neighbour, as before
+            g.dispose();
+            images[sprite.ordinal()] = image;
+        }
+        return new Sprites(images);
+    }
+}
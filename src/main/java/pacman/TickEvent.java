@@ -0,0 +1,34 @@
+package pacman;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// One logic tick of a GameLoop, for flight recordings. Disabled unless a recording turns
+// pacman.Tick on, e.g. -XX:StartFlightRecording with a settings file enabling it.
+@Name("pacman.Tick")
+@Label("Game Tick")
+@Category("Pac-Man")
+@Description("One fixed-timestep game tick")
+class TickEvent extends jdk.jfr.Event {
+    @Label("Move Time")
+    @Timespan
+    long moveNanos;
+
+    @Label("Collision Checks")
+    int collisionChecks;
+
+    @Label("Ghost Redirects")
+    int ghostRedirects;
+
+    @Label("Map Loaded")
+    boolean mapLoaded;
+
+    @Label("Score")
+    int score;
+
+    @Label("Level")
+    int level;
+}
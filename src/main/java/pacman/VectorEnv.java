@@ -0,0 +1,294 @@
+package pacman;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// A batch of headless games with a gym-style interface for training bots. step() advances every
+// environment by one tick and fills the reusable observation, reward and done arrays in place.
+//
+// Observations are CHANNELS tile grids per environment, laid out [env][channel][row][column] as
+// 0/1 floats: walls, food, power pellets, pacman, ghosts and scared ghosts. Only the cells that
+// changed get rewritten each step. Rewards are the score gained during the step. An environment
+// is done when its game is over or it reached maxTicks; it then restarts on its next seed right
+// away, so its observation already shows the new episode.
+//
+// Stepping allocates nothing. With parallelism above one, the environments are split into
+// chunks that the calling thread and parallelism - 1 worker threads pull from a shared counter.
+public class VectorEnv implements AutoCloseable {
+    static final int CHANNELS = 6;
+    static final int WALLS = 0;
+    static final int FOOD = 1;
+    static final int PELLETS = 2;
+    static final int PACMAN = 3;
+    static final int GHOSTS = 4;
+    static final int SCARED = 5;
+
+    public static final int NO_ACTION = -1; // Any action outside 0-3 keeps pacman's current direction
+
+    private final int count;
+    private final GameEngine[] engines;
+    private final long maxTicks;
+    private final int tileCount;
+    private final int observationSize;
+
+    public final float[] observations;
+    public final float[] rewards;
+    public final boolean[] dones;
+
+    private final long[] seeds;
+    private final int[] lastScore;
+    private final int[] drawnMapVersion;
+    private final int[] drawnEatenTileCount;
+    private final int[] drawnActorTiles; // count * actorCount, the cell each actor was drawn at
+
+    // Parallel stepping
+    private final int chunkSize;
+    private final int chunkCount;
+    private final Thread[] workers;
+    private final AtomicInteger nextChunk = new AtomicInteger();
+    private final AtomicInteger pendingChunks = new AtomicInteger();
+    private volatile int generation = 0;
+    private volatile boolean closed = false;
+    private volatile Thread caller;
+    private int[] actions;
+
+    public VectorEnv(Maze maze, int count, GameSettings settings, Supplier<GhostPolicy> ghostPolicies,
+                     long maxTicks, int parallelism) {
+        this.count = count;
+        this.maxTicks = maxTicks;
+        this.tileCount = maze.rows * maze.columns;
+        this.observationSize = CHANNELS * tileCount;
+
+        engines = new GameEngine[count];
+        for (int env = 0; env < count; env++) {
+            engines[env] = new GameEngine(maze, env, settings, ghostPolicies.get());
+        }
+        int actorCount = engines[0].actorCount;
+
+        observations = new float[count * observationSize];
+        rewards = new float[count];
+        dones = new boolean[count];
+        seeds = new long[count];
+        lastScore = new int[count];
+        drawnMapVersion = new int[count];
+        drawnEatenTileCount = new int[count];
+        drawnActorTiles = new int[count * actorCount];
+
+        int threads = Math.max(1, Math.min(parallelism, count));
+        chunkSize = Math.max(1, count / (threads * 4));
+        chunkCount = (count + chunkSize - 1) / chunkSize;
+        workers = new Thread[threads - 1];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(this::work, "vector-env-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        reset(0);
+    }
+
+    public VectorEnv(int count, int parallelism) {
+        this(Maze.CLASSIC, count, GameSettings.DEFAULT, ChaseScatterGhostPolicy::new, 10_000, parallelism);
+    }
+
+    public int count() {
+        return count;
+    }
+
+    // Floats per environment in observations
+    public int observationSize() {
+        return observationSize;
+    }
+
+    public int rows() {
+        return engines[0].ROW_COUNT;
+    }
+
+    public int columns() {
+        return engines[0].COLUMN_COUNT;
+    }
+
+    public GameEngine engine(int env) {
+        return engines[env];
+    }
+
+    // Restarts every environment; environment i plays seed + i, then seed + i + count, and so on
+    public void reset(long seed) {
+        for (int env = 0; env < count; env++) {
+            reset(env, seed + env);
+        }
+    }
+
+    public void reset(int env, long seed) {
+        seeds[env] = seed;
+        engines[env].restart(seed);
+        lastScore[env] = 0;
+        rewards[env] = 0;
+        dones[env] = false;
+        writeFullObservation(env);
+    }
+
+    // Applies one action per environment (a direction index, or NO_ACTION) and steps them all once
+    public void step(int[] actions) {
+        if (actions.length < count) {
+            throw new IllegalArgumentException("Need " + count + " actions, got " + actions.length);
+        }
+        if (workers.length == 0) {
+            stepRange(actions, 0, count);
+            return;
+        }
+
+        this.actions = actions;
+        caller = Thread.currentThread();
+        // Pending before next: a worker still looping from the last step must not count down early
+        pendingChunks.set(chunkCount);
+        nextChunk.set(0);
+        generation++;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+        runChunks();
+        while (pendingChunks.get() > 0) {
+            LockSupport.park(this);
+        }
+    }
+
+    // Copies all observations into a buffer, e.g. a native-order view of a direct ByteBuffer shared
+    // with a training process
+    public void writeObservations(FloatBuffer target) {
+        target.put(observations, 0, observations.length);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    private void work() {
+        int seen = 0;
+        while (!closed) {
+            int current = generation;
+            if (current == seen) {
+                LockSupport.park(this);
+                continue;
+            }
+            seen = current;
+            runChunks();
+        }
+    }
+
+    private void runChunks() {
+        int chunk;
+        while ((chunk = nextChunk.getAndIncrement()) < chunkCount) {
+            int from = chunk * chunkSize;
+            // Read after claiming the chunk, which orders it after step() published this step's actions
+            stepRange(actions, from, Math.min(count, from + chunkSize));
+            if (pendingChunks.decrementAndGet() == 0) {
+                LockSupport.unpark(caller);
+            }
+        }
+    }
+
+    private void stepRange(int[] actions, int from, int to) {
+        for (int env = from; env < to; env++) {
+            GameEngine engine = engines[env];
+            int action = actions[env];
+            engine.step(action >= 0 && action < 4 ? GameEngine.ghostDirections[action] : ' ');
+
+            rewards[env] = engine.score - lastScore[env];
+            lastScore[env] = engine.score;
+            boolean done = engine.isGameOver || engine.tickCount >= maxTicks;
+            dones[env] = done;
+            if (done) {
+                seeds[env] += count;
+                engine.restart(seeds[env]);
+                lastScore[env] = 0;
+                writeFullObservation(env);
+            } else {
+                updateObservation(env);
+            }
+        }
+    }
+
+    private void writeFullObservation(int env) {
+        GameEngine engine = engines[env];
+        int base = env * observationSize;
+        for (int tile = 0; tile < tileCount; tile++) {
+            observations[base + WALLS * tileCount + tile] = engine.tiles[tile] != 0 ? 1f : 0f;
+            observations[base + FOOD * tileCount + tile] = engine.hasFood(tile) ? 1f : 0f;
+            observations[base + PELLETS * tileCount + tile] = engine.hasPellet(tile) ? 1f : 0f;
+        }
+        int actorBase = env * engine.actorCount;
+        for (int actor = 0; actor < engine.actorCount; actor++) {
+            drawnActorTiles[actorBase + actor] = -1;
+        }
+        for (int channel = PACMAN; channel <= SCARED; channel++) {
+            Arrays.fill(observations, base + channel * tileCount, base + (channel + 1) * tileCount, 0f);
+        }
+        drawnMapVersion[env] = engine.mapVersion;
+        drawnEatenTileCount[env] = engine.eatenTileCount;
+        drawActors(env);
+    }
+
+    private void updateObservation(int env) {
+        GameEngine engine = engines[env];
+        if (engine.mapVersion != drawnMapVersion[env]) {
+            writeFullObservation(env); // New level
+            return;
+        }
+        int base = env * observationSize;
+        for (int i = drawnEatenTileCount[env]; i < engine.eatenTileCount; i++) {
+            int tile = engine.eatenTiles[i];
+            observations[base + FOOD * tileCount + tile] = 0f;
+            observations[base + PELLETS * tileCount + tile] = 0f;
+        }
+        drawnEatenTileCount[env] = engine.eatenTileCount;
+
+        // Clear every actor before drawing any, since ghosts can share a cell
+        int actorBase = env * engine.actorCount;
+        for (int actor = 0; actor < engine.actorCount; actor++) {
+            int tile = drawnActorTiles[actorBase + actor];
+            if (tile >= 0) {
+                observations[base + PACMAN * tileCount + tile] = 0f;
+                observations[base + GHOSTS * tileCount + tile] = 0f;
+                observations[base + SCARED * tileCount + tile] = 0f;
+            }
+        }
+        drawActors(env);
+    }
+
+    private void drawActors(int env) {
+        GameEngine engine = engines[env];
+        int base = env * observationSize;
+        int actorBase = env * engine.actorCount;
+        for (int actor = 0; actor < engine.actorCount; actor++) {
+            int tile = actorTile(engine, actor);
+            drawnActorTiles[actorBase + actor] = tile;
+            int channel;
+            if (actor == GameEngine.PACMAN) {
+                channel = PACMAN;
+            } else {
+                if (engine.ghostMode[actor] == GameEngine.FRIGHTENED) {
+                    observations[base + SCARED * tileCount + tile] = 1f;
+                }
+                channel = GHOSTS;
+            }
+            observations[base + channel * tileCount + tile] = 1f;
+        }
+    }
+
+    // The tile under an actor's centre, clamped onto the board while it passes through a tunnel
+    private static int actorTile(GameEngine engine, int actor) {
+        int half = GameEngine.TILE_UNITS / 2;
+        int row = Math.floorDiv(engine.actorY[actor] + half, GameEngine.TILE_UNITS);
+        int column = Math.floorDiv(engine.actorX[actor] + half, GameEngine.TILE_UNITS);
+        row = Math.max(0, Math.min(engine.ROW_COUNT - 1, row));
+        column = Math.max(0, Math.min(engine.COLUMN_COUNT - 1, column));
+        return row * engine.COLUMN_COUNT + column;
+    }
+}
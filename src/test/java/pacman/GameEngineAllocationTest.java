@@ -0,0 +1,68 @@
+package pacman;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+// A steady-state tick allocates nothing, so the GC never has a reason to pause the game
+class GameEngineAllocationTest {
+    private static final int WARMUP_TICKS = 50_000;
+    private static final int MEASURED_TICKS = 5_000;
+
+    @Test
+    void stepAllocatesNothing() {
+        assertPlayAllocatesNothing(null);
+    }
+
+    // The loop's measuring path: timings, counters, the allocation sampler and the JFR check
+    @Test
+    void measuredStepAllocatesNothing() {
+        assertPlayAllocatesNothing(new FrameMetrics());
+    }
+
+    private static void assertPlayAllocatesNothing(FrameMetrics metrics) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        GameEngine engine = new GameEngine(42L);
+        PacmanPolicy player = new RandomPacmanPolicy(42L);
+        play(engine, player, metrics, WARMUP_TICKS);
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        long calibration = threads.getCurrentThreadAllocatedBytes() - before; // The counter read itself
+        before = threads.getCurrentThreadAllocatedBytes();
+        play(engine, player, metrics, MEASURED_TICKS);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before - calibration;
+
+        assertFalse(engine.isGameOver);
+        assertEquals(0, allocated, "bytes allocated over " + MEASURED_TICKS + " ticks");
+    }
+
+    // Eating, deaths, respawns and the ghost mode schedule all come up; lives are topped up so the
+    // game never ends. With metrics, each step is recorded the way GameLoop and PacManPanel do.
+    private static void play(GameEngine engine, PacmanPolicy player, FrameMetrics metrics, int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            if (engine.lives < 2) {
+                engine.lives = 3;
+            }
+            char direction = player.nextDirection(engine);
+            if (metrics == null) {
+                engine.step(direction);
+                continue;
+            }
+            long collisions = engine.collisionChecks;
+            long redirects = engine.ghostRedirects;
+            long loadMaps = engine.loadMapCount;
+            long start = System.nanoTime();
+            engine.step(direction);
+            long end = System.nanoTime();
+            long loadMapNanos = engine.loadMapCount != loadMaps ? engine.lastLoadMapNanos : -1;
+            metrics.recordStep(end - start, engine.collisionChecks - collisions,
+                    engine.ghostRedirects - redirects, loadMapNanos, engine.score, engine.level);
+            metrics.recordTick(end - start);
+            metrics.sampleAllocationRate(end);
+        }
+    }
+}
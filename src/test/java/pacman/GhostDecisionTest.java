@@ -0,0 +1,77 @@
+package pacman;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Ghost decisions spread over GhostDecisionPool come out exactly as on one thread
+class GhostDecisionTest {
+    private static final int FACTOR = 3; // 36 ghosts, enough for the pool
+    private static final int TICKS = 3_000;
+
+    // The pool is sized once, by the number of processors unless told otherwise; with one it
+    // would never be used
+    @BeforeAll
+    static void sizePool() {
+        if (System.getProperty("pacman.ghostThreads") == null) {
+            System.setProperty("pacman.ghostThreads", "4");
+        }
+        assertTrue(GhostDecisionPool.shared().participants() > 1);
+    }
+
+    @Test
+    void chaseScatterIsDeterministicInParallel() {
+        assertSameGames(new ChaseScatterGhostPolicy(), new ChaseScatterGhostPolicy());
+    }
+
+    @Test
+    void randomIsDeterministicInParallel() {
+        assertSameGames(new RandomGhostPolicy(), new RandomGhostPolicy());
+    }
+
+    private static void assertSameGames(GhostPolicy serialPolicy, GhostPolicy parallelPolicy) {
+        Maze maze = new Maze("tiled", tiled(FACTOR));
+        GameEngine serial = new GameEngine(maze, 11L, GameSettings.DEFAULT, serialPolicy);
+        GameEngine parallel = new GameEngine(maze, 11L, GameSettings.DEFAULT, parallelPolicy);
+        serial.parallelGhosts = false;
+        parallel.parallelGhosts = true;
+        Random random = new Random(3);
+        for (int tick = 0; tick < TICKS && !serial.isGameOver; tick++) {
+            char direction = random.nextInt(8) == 0 ? GameEngine.ghostDirections[random.nextInt(4)] : ' ';
+            serial.step(direction);
+            parallel.step(direction);
+            if (tick % 100 == 0) {
+                assertArrayEquals(serial.snapshot(), parallel.snapshot(), "state at tick " + tick);
+            }
+        }
+        assertArrayEquals(serial.snapshot(), parallel.snapshot());
+    }
+
+    // The default map repeated factor times each way with one pacman, stacked copies opened to
+    // each other, as the benchmarks' SyntheticMazes.scaled does
+    private static String[] tiled(int factor) {
+        String[] base = GameEngine.DEFAULT_TILE_MAP;
+        String[] maze = new String[base.length * factor];
+        for (int tileRow = 0; tileRow < factor; tileRow++) {
+            for (int r = 0; r < base.length; r++) {
+                boolean open = (r == 0 && tileRow > 0) || (r == base.length - 1 && tileRow < factor - 1);
+                StringBuilder row = new StringBuilder();
+                for (int tileColumn = 0; tileColumn < factor; tileColumn++) {
+                    boolean keepPacman = tileRow == 0 && tileColumn == 0;
+                    StringBuilder copy = new StringBuilder(keepPacman ? base[r] : base[r].replace('P', ' '));
+                    if (open) {
+                        copy.setCharAt(3, ' ');
+                        copy.setCharAt(copy.length() - 4, ' ');
+                    }
+                    row.append(copy);
+                }
+                maze[tileRow * base.length + r] = row.toString();
+            }
+        }
+        return maze;
+    }
+}
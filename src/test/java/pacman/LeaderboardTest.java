@@ -0,0 +1,104 @@
+package pacman;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeaderboardTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void keepsTheBestGamesAcrossReopening() throws IOException, InterruptedException {
+        Path path = directory.resolve("scores.pmlb");
+        Random random = new Random(1);
+        List<Integer> scores = new ArrayList<>();
+        try (Leaderboard leaderboard = Leaderboard.open(path, 10)) {
+            for (int i = 0; i < 200; i++) {
+                int score = random.nextInt(100_000);
+                scores.add(score);
+                leaderboard.record(score, 1, 100, i, i % 3 == 0 ? "replay-" + i + ".pmr" : null);
+            }
+            assertTrue(leaderboard.flush());
+        }
+        scores.sort(Comparator.reverseOrder());
+
+        try (Leaderboard leaderboard = Leaderboard.open(path, 10)) {
+            List<Leaderboard.Entry> top = leaderboard.top(10);
+            assertEquals(10, top.size());
+            for (int i = 0; i < top.size(); i++) {
+                assertEquals(scores.get(i), top.get(i).score());
+            }
+        }
+    }
+
+    // A record cut short by a crash is dropped with anything after it; the file stays usable
+    @Test
+    void recoversFromATornTail() throws IOException, InterruptedException {
+        Path path = directory.resolve("scores.pmlb");
+        try (Leaderboard leaderboard = Leaderboard.open(path, 10)) {
+            for (int i = 0; i < 5; i++) {
+                leaderboard.record(1_000 * (i + 1), 1, 100, i, "replay-" + i + ".pmr");
+            }
+            assertTrue(leaderboard.flush());
+        }
+        long size = Files.size(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        try (Leaderboard leaderboard = Leaderboard.open(path, 10)) {
+            List<Leaderboard.Entry> top = leaderboard.top(10);
+            assertEquals(4, top.size());
+            assertEquals(4_000, top.get(0).score());
+            assertTrue(Files.size(path) < size - 3, "the torn record was cut off");
+            leaderboard.record(9_000, 2, 50, 9, null);
+            assertTrue(leaderboard.flush());
+        }
+        try (Leaderboard leaderboard = Leaderboard.open(path, 10)) {
+            List<Leaderboard.Entry> top = leaderboard.top(10);
+            assertEquals(5, top.size());
+            assertEquals(9_000, top.get(0).score());
+            assertEquals("replay-3.pmr", top.get(1).replay());
+        }
+    }
+
+    // A log far longer than the index is rewritten with just the indexed games
+    @Test
+    void compactsTheLog() throws IOException, InterruptedException {
+        Path path = directory.resolve("scores.pmlb");
+        int capacity = 5;
+        int games = 2_000;
+        try (Leaderboard leaderboard = Leaderboard.open(path, capacity)) {
+            for (int i = 0; i < games; i++) {
+                leaderboard.record(i, 1, 100, i, null);
+            }
+            assertTrue(leaderboard.flush());
+        }
+        long recordBytes = 4 + 4 + 8 + 8 + 4 + 4 + 8 + 8 + 2;
+        assertTrue(Files.size(path) < games * recordBytes / 4, "log size " + Files.size(path));
+        assertFalse(Files.exists(directory.resolve("scores.pmlb.compact")));
+
+        try (Leaderboard leaderboard = Leaderboard.open(path, capacity)) {
+            List<Leaderboard.Entry> top = leaderboard.top(capacity);
+            for (int i = 0; i < capacity; i++) {
+                assertEquals(games - 1 - i, top.get(i).score());
+            }
+            long sequence = leaderboard.record(0, 1, 1, 1, null).sequence();
+            assertTrue(sequence > top.get(0).sequence(), "sequence numbers keep growing after compaction");
+        }
+    }
+}
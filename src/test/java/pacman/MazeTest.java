@@ -0,0 +1,111 @@
+package pacman;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MazeTest {
+    private static final String CLASSIC_TEXT = String.join("\n", GameEngine.DEFAULT_TILE_MAP);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void binaryRoundTrip() throws IOException {
+        Maze maze = Maze.read(ByteBuffer.wrap(Maze.CLASSIC.toBytes()));
+
+        assertEquals(Maze.CLASSIC.name, maze.name);
+        assertArrayEquals(Maze.CLASSIC.tileMap(), maze.tileMap());
+        assertEquals(Maze.CLASSIC.cherryTile, maze.cherryTile);
+        assertArrayEquals(Maze.CLASSIC.tunnelRows, maze.tunnelRows);
+    }
+
+    @Test
+    void textRoundTrip() throws IOException {
+        Maze maze = text("# cherry 9 11\n# tunnels 9\n" + CLASSIC_TEXT);
+
+        assertArrayEquals(Maze.CLASSIC.tileMap(), maze.tileMap());
+        assertEquals(Maze.CLASSIC.cherryTile, maze.cherryTile);
+        assertArrayEquals(Maze.CLASSIC.tunnelRows, maze.tunnelRows);
+    }
+
+    @Test
+    void rejectsBadMetadata() {
+        assertRejected("# tunnels 99\n" + CLASSIC_TEXT);
+        assertRejected("# tunnels -1\n" + CLASSIC_TEXT);
+        assertRejected("# cherry -1 11\n" + CLASSIC_TEXT);
+        assertRejected("# cherry 9 -1\n" + CLASSIC_TEXT);
+        assertRejected("# cherry 99 11\n" + CLASSIC_TEXT);
+        assertRejected("# cherry 0 0\n" + CLASSIC_TEXT); // A wall
+    }
+
+    @Test
+    void rejectsBadTileMaps() {
+        String[] ragged = GameEngine.DEFAULT_TILE_MAP.clone();
+        ragged[3] = ragged[3].substring(1);
+        assertRejected(String.join("\n", ragged));
+        assertRejected("");
+        assertRejected(CLASSIC_TEXT.replace('P', 'Q'));
+    }
+
+    @Test
+    void rejectsCorruptBinary() {
+        byte[] bytes = Maze.CLASSIC.toBytes();
+        int sizes = 4 + 1 + 2 + Maze.CLASSIC.name.length();
+
+        byte[] huge = bytes.clone();
+        ByteBuffer.wrap(huge).putShort(sizes, (short) 0xFFFF).putShort(sizes + 2, (short) 0xFFFF);
+        assertBinaryRejected(huge);
+
+        byte[] tunnel = bytes.clone();
+        ByteBuffer.wrap(tunnel).putShort(sizes + 2 + 2 + 4 + 2, (short) 99);
+        assertBinaryRejected(tunnel);
+
+        byte[] cherry = bytes.clone();
+        ByteBuffer.wrap(cherry).putInt(sizes + 2 + 2, -1);
+        assertBinaryRejected(cherry);
+
+        assertBinaryRejected(Arrays.copyOf(bytes, bytes.length - 1));
+        assertBinaryRejected(Arrays.copyOf(bytes, sizes + 1));
+        assertBinaryRejected(new byte[] {1, 2, 3});
+    }
+
+    // load() reports every bad file as an IOException, whatever the format
+    @Test
+    void loadReportsValidationAsIOException() throws IOException {
+        Path path = directory.resolve("bad.txt");
+        Files.writeString(path, "# tunnels 99\n" + CLASSIC_TEXT);
+        assertThrows(IOException.class, () -> Maze.load(path));
+
+        Path good = directory.resolve("good.pmz");
+        Maze.CLASSIC.save(good);
+        assertArrayEquals(Maze.CLASSIC.tileMap(), Maze.load(good).tileMap());
+    }
+
+    private static Maze text(String text) throws IOException {
+        return Maze.readText("test", new BufferedReader(new StringReader(text)));
+    }
+
+    // Text mazes fail with IOException for bad metadata and IllegalArgumentException for a bad board
+    private static void assertRejected(String text) {
+        Exception e = assertThrows(Exception.class, () -> text(text));
+        if (!(e instanceof IOException) && !(e instanceof IllegalArgumentException)) {
+            throw new AssertionError("Unexpected " + e, e);
+        }
+    }
+
+    private static void assertBinaryRejected(byte[] bytes) {
+        assertThrows(IOException.class, () -> Maze.read(ByteBuffer.wrap(bytes)));
+    }
+}
@@ -0,0 +1,88 @@
+package pacman;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplayTest {
+    private static final long MAX_TICKS = 8_000;
+
+    @Test
+    void roundTripVerifiesBitForBit() throws IOException {
+        Replay replay = Replay.read(new ByteArrayInputStream(bytes(record())));
+
+        assertTrue(replay.eventCount() > 0);
+        assertTrue(new ReplayPlayer(replay).verify());
+    }
+
+    @Test
+    void seekMatchesPlayingStraightThrough() throws IOException {
+        Replay replay = Replay.read(new ByteArrayInputStream(bytes(record())));
+        long tick = replay.ticks / 2 + 13;
+        ReplayPlayer straight = new ReplayPlayer(replay);
+        straight.playTo(tick);
+
+        ReplayPlayer seeking = new ReplayPlayer(replay, 500);
+        seeking.playToEnd();
+        seeking.seek(tick); // Backwards, from a snapshot
+        assertEquals(tick, seeking.tick());
+        assertArrayEquals(straight.engine().snapshot(), seeking.engine().snapshot());
+
+        seeking.seek(0);
+        seeking.seek(tick); // Forwards, from where it is
+        assertArrayEquals(straight.engine().snapshot(), seeking.engine().snapshot());
+        assertTrue(seeking.verify());
+    }
+
+    // Every length in the file is checked before anything that size is allocated
+    @Test
+    void rejectsCorruptLengths() throws IOException {
+        byte[] file = bytes(record());
+        ByteBuffer buffer = ByteBuffer.wrap(file);
+        int mazeLength = 4 + 1 + 8 + 4 + 4 + 2 + (buffer.getShort(21) & 0xFFFF);
+        int eventCount = mazeLength + 4 + buffer.getInt(mazeLength);
+        int eventLength = eventCount + 4;
+
+        assertRejected(file, mazeLength, -1);
+        assertRejected(file, mazeLength, Integer.MAX_VALUE);
+        assertRejected(file, eventCount, -1);
+        assertRejected(file, eventCount, Integer.MAX_VALUE);
+        assertRejected(file, eventLength, -1);
+        assertRejected(file, eventLength, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> Replay.read(new ByteArrayInputStream(file, 0, file.length - 1)));
+    }
+
+    private static void assertRejected(byte[] file, int offset, int value) {
+        byte[] corrupt = file.clone();
+        ByteBuffer.wrap(corrupt).putInt(offset, value);
+        assertThrows(IOException.class, () -> Replay.read(new ByteArrayInputStream(corrupt)));
+    }
+
+    // A game with a random direction change every few ticks, recorded the way PacManPanel does
+    private static Replay record() {
+        GameEngine engine = new GameEngine(7L);
+        ReplayRecorder recorder = new ReplayRecorder(engine);
+        Random random = new Random(1);
+        while (!engine.isGameOver && engine.tickCount < MAX_TICKS) {
+            char direction = random.nextInt(6) == 0 ? GameEngine.ghostDirections[random.nextInt(4)] : ' ';
+            recorder.record(engine.tickCount, direction);
+            engine.step(direction);
+        }
+        return recorder.finish(engine);
+    }
+
+    private static byte[] bytes(Replay replay) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        replay.write(out);
+        return out.toByteArray();
+    }
+}
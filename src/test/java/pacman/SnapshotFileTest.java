@@ -0,0 +1,112 @@
+package pacman;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotFileTest {
+    private static final int HISTORY_BYTES = 64 << 10; // Small, so the segments wrap many times
+    private static final int TICKS = 20_000;
+    private static final int KEPT_TICKS = 1_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restoresAndResumesAcrossSegmentWrap() throws IOException {
+        Path path = directory.resolve("game.pmss");
+        GameEngine engine = new GameEngine(7L);
+        Map<Long, byte[]> states = new HashMap<>();
+        try (SnapshotFile snapshots = SnapshotFile.create(path, engine, HISTORY_BYTES)) {
+            play(engine, snapshots, states);
+            assertTrue(snapshots.oldestTick() > 0, "the oldest segments were overwritten");
+
+            GameEngine restored = new GameEngine(0L);
+            for (long tick = snapshots.oldestTick(); tick <= snapshots.latestTick(); tick += 37) {
+                if (states.containsKey(tick)) {
+                    assertTrue(snapshots.restore(restored, tick));
+                    assertArrayEquals(states.get(tick), restored.snapshot(), "state at tick " + tick);
+                }
+            }
+            assertFalse(snapshots.restore(restored, snapshots.oldestTick() - 1));
+        }
+
+        byte[] last = engine.snapshot();
+        try (SnapshotFile reopened = SnapshotFile.open(path)) {
+            GameEngine resumed = reopened.resume();
+            assertArrayEquals(last, resumed.snapshot());
+
+            // Saving carries on from the reopened history
+            for (int i = 0; i < 10; i++) {
+                resumed.step(' ');
+                reopened.save(resumed);
+            }
+            last = resumed.snapshot();
+        }
+        try (SnapshotFile reopened = SnapshotFile.open(path)) {
+            assertArrayEquals(last, reopened.resume().snapshot());
+        }
+    }
+
+    // A crash in the middle of writing a record loses that record and nothing before it
+    @Test
+    void dropsATornRecord() throws IOException {
+        Path path = directory.resolve("game.pmss");
+        GameEngine engine = new GameEngine(7L);
+        try (SnapshotFile snapshots = SnapshotFile.create(path, engine, HISTORY_BYTES)) {
+            play(engine, snapshots, new HashMap<>());
+        }
+        byte[] kept = engine.snapshot();
+        long keptTick = engine.tickCount;
+
+        byte[] before;
+        try (SnapshotFile snapshots = SnapshotFile.open(path)) {
+            before = Files.readAllBytes(path);
+            GameEngine resumed = snapshots.resume();
+            resumed.step('L');
+            snapshots.save(resumed);
+        }
+        byte[] after = Files.readAllBytes(path);
+        int first = 0;
+        while (before[first] == after[first]) {
+            first++;
+        }
+        int last = after.length - 1;
+        while (before[last] == after[last]) {
+            last--;
+        }
+        after[(first + last) / 2] ^= 0x55;
+        Files.write(path, after);
+
+        try (SnapshotFile snapshots = SnapshotFile.open(path)) {
+            assertEquals(keptTick, snapshots.latestTick());
+            assertArrayEquals(kept, snapshots.resume().snapshot());
+        }
+    }
+
+    // Random play over restarts, saving every tick and keeping the latest states to compare with
+    private static void play(GameEngine engine, SnapshotFile snapshots, Map<Long, byte[]> states) {
+        Random random = new Random(1);
+        for (int i = 0; i < TICKS; i++) {
+            if (engine.isGameOver) {
+                engine.restart(random.nextLong());
+            }
+            engine.step(random.nextInt(5) == 0 ? ' ' : GameEngine.ghostDirections[random.nextInt(4)]);
+            snapshots.save(engine);
+            if (i >= TICKS - KEPT_TICKS) {
+                states.put(engine.tickCount, engine.snapshot());
+            }
+        }
+    }
+}